@@ -0,0 +1,46 @@
+// JMH benchmarks for norswap.utils.
+//
+// Run with `./gradlew :bench:jmh`. Results are written to `bench/build/results/jmh/results.json`.
+// See `doc/BENCHMARKS.md` for how to compare a run against the recorded baseline.
+
+// === PLUGINS =====================================================================================
+
+plugins {
+    java
+    id("me.champeau.gradle.jmh") version "0.5.3"
+}
+
+// === MAIN BUILD DETAILS ==========================================================================
+
+java.sourceCompatibility = JavaVersion.VERSION_1_8
+java.targetCompatibility = JavaVersion.VERSION_1_8
+
+// Benchmarks live directly under `src`, like the main project's sources.
+sourceSets.main.get().java.setSrcDirs(emptyList<String>())
+sourceSets["jmh"].java.srcDir("src")
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion = "1.26"
+    resultFormat = "JSON"
+    // Override from the command line with e.g. `-Pjmh.include=ArrayStack` to run a subset.
+    include = listOf((findProperty("jmh.include") as String?) ?: ".*")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+}
+
+// === DEPENDENCIES ================================================================================
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    implementation(rootProject)
+}
+
+// =================================================================================================
@@ -0,0 +1,115 @@
+package norswap.utils.bench;
+
+import norswap.utils.reflection.Access;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * Cost of reading a private field through {@link Access}, compared to a direct field read, as
+ * well as the cost of writing fields, copying objects, looking up methods and calling generated
+ * lambdas through {@link Access}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccessBench
+{
+    // ---------------------------------------------------------------------------------------------
+
+    public static class Base {
+        private int inherited = 1;
+    }
+
+    public static final class Derived extends Base {
+        private int own = 2;
+        public int own() { return own; }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final Derived object = new Derived();
+
+    private final Derived copy = new Derived();
+
+    private final MethodHandle getter = Access.getter(Derived.class, "own");
+
+    private final ToIntFunction<Derived> lambda =
+        cast(Access.lambda(ToIntFunction.class, Access.method(Derived.class, "own")));
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int direct() {
+        return object.own();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int getByName() {
+        return Access.<Integer>get(object, "own");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Must walk one level up the superclass chain. */
+    @Benchmark public int getInheritedByName() {
+        return Access.<Integer>get(object, "inherited");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int getWithClass() {
+        return Access.<Integer>get(object, Base.class, "inherited");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int getterHandle() throws Throwable {
+        return (int) getter.invokeExact(object);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int getIntByName() {
+        return Access.getInt(object, "own");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void setIntByName() {
+        Access.setInt(object, "own", 3);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public Derived copyFields()
+    {
+        Access.copyFields(object, copy);
+        return copy;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Cached after the first call. */
+    @Benchmark public Method methodByName() {
+        return Access.method(Derived.class, "own");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Calls {@code own()} through a lambda generated by {@link Access#lambda}. */
+    @Benchmark public int lambdaFunction() {
+        return lambda.applyAsInt(object);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,157 @@
+package norswap.utils.bench;
+
+import norswap.utils.data.structures.ArrayListInt;
+import norswap.utils.data.structures.ArrayListLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk operations of {@link ArrayListInt} and {@link ArrayListLong}, each compared to the
+ * equivalent element-by-element loop over the single-element API ({@code *Loop} benchmarks).
+ *
+ * <p>{@link #source} and {@link #list} hold {@link #size} items. Benchmarks that modify the list
+ * restore its size before returning, so the list is never reallocated after setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArrayListBench
+{
+    // ---------------------------------------------------------------------------------------------
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private int[] source;
+
+    private int[] dest;
+
+    private ArrayListInt list;
+
+    private ArrayListLong longList;
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Setup public void setup()
+    {
+        source = new int[size];
+        dest = new int[size];
+        list = new ArrayListInt(size);
+        longList = new ArrayListLong(size);
+        for (int i = 0; i < size; ++i) {
+            source[i] = (i * 31) ^ (i >>> 3);
+            list.add(source[i]);
+            longList.add(source[i]);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public ArrayListInt addAllLoop()
+    {
+        ArrayListInt out = new ArrayListInt(size);
+        for (int i = 0; i < size; ++i)
+            out.add(source[i]);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public ArrayListInt addAll()
+    {
+        ArrayListInt out = new ArrayListInt(size);
+        out.addAll(source, 0, size);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int[] popLoop()
+    {
+        for (int i = size - 1; i >= 0; --i)
+            dest[i] = list.pop();
+        list.addAll(dest);
+        return dest;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int[] pop()
+    {
+        list.pop(size, dest, 0);
+        list.addAll(dest);
+        return dest;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public long sumLoop()
+    {
+        long sum = 0;
+        for (int i = 0; i < list.size(); ++i)
+            sum += list.get(i);
+        return sum;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public long sum() {
+        return list.sum();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public long sumLong() {
+        return longList.sum();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int maxLoop()
+    {
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < list.size(); ++i)
+            max = Math.max(max, list.get(i));
+        return max;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int max() {
+        return list.max();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public ArrayListInt mapLoop()
+    {
+        for (int i = 0; i < list.size(); ++i)
+            list.set(i, list.get(i) ^ 0x5555);
+        return list;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public ArrayListInt map()
+    {
+        list.map(x -> x ^ 0x5555);
+        return list;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public ArrayListLong mapLong()
+    {
+        longList.map(x -> x ^ 0x5555);
+        return longList;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
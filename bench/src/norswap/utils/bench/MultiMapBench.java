@@ -0,0 +1,164 @@
+package norswap.utils.bench;
+
+import norswap.utils.multimap.CompactMultiMap;
+import norswap.utils.multimap.ConcurrentMultiMap;
+import norswap.utils.multimap.FrozenMultiMap;
+import norswap.utils.multimap.IntMultiMap;
+import norswap.utils.multimap.MultiHashMap;
+import norswap.utils.multimap.MultiHashSetMap;
+import norswap.utils.multimap.MultiMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Add and get throughput for {@link MultiHashMap}, {@link MultiHashSetMap} and {@link
+ * CompactMultiMap}, as well as add throughput for {@link ConcurrentMultiMap}, from a single thread
+ * and from a parallel stream. Also compares get and pair iteration throughput for {@link
+ * FrozenMultiMap} with that of the {@link MultiHashMap} it was frozen from, and add throughput of
+ * {@link IntMultiMap} with that of the boxed multimaps.
+ *
+ * <p>{@link #pairs} (key, value) pairs are drawn over {@link #keys} distinct keys, so that the
+ * average number of values per key is {@code pairs / keys}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultiMapBench
+{
+    // ---------------------------------------------------------------------------------------------
+
+    @Param({"1000", "100000"})
+    public int keys;
+
+    @Param({"100000"})
+    public int pairs;
+
+    private Integer[] pairKeys;
+    private Integer[] pairValues;
+
+    private MultiHashMap<Integer, Integer> listMap;
+    private MultiHashSetMap<Integer, Integer> setMap;
+    private CompactMultiMap<Integer, Integer> compactMap;
+    private FrozenMultiMap<Integer, Integer> frozenMap;
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Setup public void setup()
+    {
+        Random random = new Random(42);
+        pairKeys = new Integer[pairs];
+        pairValues = new Integer[pairs];
+        for (int i = 0; i < pairs; ++i) {
+            pairKeys[i] = random.nextInt(keys);
+            pairValues[i] = random.nextInt();
+        }
+        listMap = fill(new MultiHashMap<>());
+        setMap = fill(new MultiHashSetMap<>());
+        compactMap = fill(new CompactMultiMap<>());
+        frozenMap = listMap.freeze();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private <M extends MultiMap<Integer, Integer>> M fill (M map)
+    {
+        for (int i = 0; i < pairs; ++i)
+            map.add(pairKeys[i], pairValues[i]);
+        return map;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public MultiMap<Integer, Integer> addMultiHashMap() {
+        return fill(new MultiHashMap<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public MultiMap<Integer, Integer> addMultiHashSetMap() {
+        return fill(new MultiHashSetMap<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public MultiMap<Integer, Integer> addCompactMultiMap() {
+        return fill(new CompactMultiMap<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public IntMultiMap addIntMultiMap()
+    {
+        IntMultiMap map = new IntMultiMap();
+        for (int i = 0; i < pairs; ++i)
+            map.add(pairKeys[i], pairValues[i]);
+        return map;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public MultiMap<Integer, Integer> addConcurrentMultiMap() {
+        return fill(new ConcurrentMultiMap<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public MultiMap<Integer, Integer> addConcurrentMultiMapParallel()
+    {
+        ConcurrentMultiMap<Integer, Integer> map = new ConcurrentMultiMap<>();
+        IntStream.range(0, pairs).parallel().forEach(i -> map.add(pairKeys[i], pairValues[i]));
+        return map;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void getMultiHashMap (Blackhole hole) {
+        for (Integer key: pairKeys)
+            hole.consume(listMap.get(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void getMultiHashSetMap (Blackhole hole) {
+        for (Integer key: pairKeys)
+            hole.consume(setMap.get(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void getCompactMultiMap (Blackhole hole) {
+        for (Integer key: pairKeys)
+            hole.consume(compactMap.get(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void getFrozenMultiMap (Blackhole hole) {
+        for (Integer key: pairKeys)
+            hole.consume(frozenMap.get(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void pairsMultiHashMap (Blackhole hole) {
+        listMap.pairs().forEach(hole::consume);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void forEachPairFrozenMultiMap (Blackhole hole) {
+        frozenMap.forEachPair((k, v) -> hole.consume(v));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,95 @@
+package norswap.utils.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A small tree hierarchy used by {@link WalkerBench}, whose children are exposed both as public
+ * fields (for {@link norswap.utils.visitors.ReflectiveFieldWalker}) and as public accessors (for
+ * {@link norswap.utils.visitors.ReflectiveAccessorWalker}).
+ */
+public final class Nodes
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private Nodes() {}
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static abstract class Node {
+        public List<Node> children() {
+            return Collections.emptyList();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static final class Leaf extends Node {
+        public final int value;
+        public Leaf (int value) {
+            this.value = value;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static final class Binary extends Node
+    {
+        public final Node left;
+        public final Node right;
+
+        public Binary (Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        public Node left()  { return left;  }
+        public Node right() { return right; }
+
+        @Override public List<Node> children() {
+            return Arrays.asList(left, right);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public static final class Block extends Node
+    {
+        public final List<Node> statements;
+
+        public Block (List<Node> statements) {
+            this.statements = statements;
+        }
+
+        public List<Node> statements() {
+            return statements;
+        }
+
+        @Override public List<Node> children() {
+            return statements;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Builds a tree of the given depth, alternating between blocks of {@code width} children and
+     * binary nodes, and returns it. The number of nodes in the tree is stored in {@code count[0]}.
+     */
+    public static Node tree (int depth, int width, int[] count)
+    {
+        ++count[0];
+        if (depth == 0)
+            return new Leaf(count[0]);
+        if (depth % 2 == 0)
+            return new Binary(tree(depth - 1, width, count), tree(depth - 1, width, count));
+        List<Node> statements = new ArrayList<>(width);
+        for (int i = 0; i < width; ++i)
+            statements.add(tree(depth - 1, width, count));
+        return new Block(statements);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
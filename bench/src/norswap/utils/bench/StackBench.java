@@ -0,0 +1,141 @@
+package norswap.utils.bench;
+
+import norswap.utils.data.structures.ArrayListInt;
+import norswap.utils.data.structures.ArrayListLong;
+import norswap.utils.data.structures.ArrayStack;
+import norswap.utils.data.structures.ChunkedArrayListInt;
+import norswap.utils.data.structures.ChunkedArrayStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push/pop/peek throughput for {@link ArrayStack}, {@link ArrayListInt} and {@link ArrayListLong},
+ * as well as for their chunked counterparts {@link ChunkedArrayStack} and
+ * {@link ChunkedArrayListInt}.
+ *
+ * <p>Each invocation pushes {@link #size} items onto an empty stack, peeks at the top after every
+ * push, then pops everything. The stacks are recreated for every invocation, so growth of the
+ * backing array is included in the measurements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StackBench
+{
+    // ---------------------------------------------------------------------------------------------
+
+    @Param({"16", "1024", "65536"})
+    public int size;
+
+    private Integer[] boxed;
+
+    private Integer[] buffer;
+
+    private final ArrayStack.Window<Integer> window = new ArrayStack.Window<>();
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Setup public void setup()
+    {
+        boxed = new Integer[size];
+        for (int i = 0; i < size; ++i)
+            boxed[i] = i;
+        buffer = new Integer[size];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void arrayStack (Blackhole hole)
+    {
+        ArrayStack<Integer> stack = new ArrayStack<>();
+        for (Integer item: boxed) {
+            stack.push(item);
+            hole.consume(stack.peek());
+        }
+        while (!stack.isEmpty())
+            hole.consume(stack.pop());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void arrayStackBulk (Blackhole hole)
+    {
+        ArrayStack<Integer> stack = new ArrayStack<>();
+        stack.push(boxed);
+        hole.consume(stack.peek(size / 2, Integer[]::new));
+        hole.consume(stack.pop(size, Integer[]::new));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void arrayStackBulkNoAlloc (Blackhole hole)
+    {
+        ArrayStack<Integer> stack = new ArrayStack<>();
+        stack.push(boxed);
+        hole.consume(stack.topWindow(size / 2, window).get(0));
+        stack.pop(size, buffer, 0);
+        hole.consume(buffer);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void chunkedArrayStack (Blackhole hole)
+    {
+        ChunkedArrayStack<Integer> stack = new ChunkedArrayStack<>();
+        for (Integer item: boxed) {
+            stack.push(item);
+            hole.consume(stack.peek());
+        }
+        while (!stack.isEmpty())
+            hole.consume(stack.pop());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void arrayListInt (Blackhole hole)
+    {
+        ArrayListInt stack = new ArrayListInt();
+        for (int i = 0; i < size; ++i) {
+            stack.push(i);
+            hole.consume(stack.peek());
+        }
+        while (stack.size() > 0)
+            hole.consume(stack.pop());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void chunkedArrayListInt (Blackhole hole)
+    {
+        ChunkedArrayListInt stack = new ChunkedArrayListInt();
+        for (int i = 0; i < size; ++i) {
+            stack.push(i);
+            hole.consume(stack.peek());
+        }
+        while (stack.size() > 0)
+            hole.consume(stack.pop());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public void arrayListLong (Blackhole hole)
+    {
+        ArrayListLong stack = new ArrayListLong();
+        for (int i = 0; i < size; ++i) {
+            stack.push(i);
+            hole.consume(stack.peek());
+        }
+        while (stack.size() > 0)
+            hole.consume(stack.pop());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
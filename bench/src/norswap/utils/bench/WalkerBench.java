@@ -0,0 +1,110 @@
+package norswap.utils.bench;
+
+import norswap.utils.bench.Nodes.Node;
+import norswap.utils.visitors.ReflectiveAccessorWalker;
+import norswap.utils.visitors.ReflectiveFieldWalker;
+import norswap.utils.visitors.Walker;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static norswap.utils.visitors.WalkVisitType.POST_VISIT;
+import static norswap.utils.visitors.WalkVisitType.PRE_VISIT;
+
+/**
+ * Tree-walk throughput for a hand-written {@link Walker}, {@link ReflectiveFieldWalker} and {@link
+ * ReflectiveAccessorWalker}, over the same tree.
+ *
+ * <p>The score is in walks per second; the {@code nodes} auxiliary counter reports the
+ * corresponding nodes-per-second figure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WalkerBench
+{
+    // ---------------------------------------------------------------------------------------------
+
+    @Param({"10"})
+    public int depth;
+
+    @Param({"4"})
+    public int width;
+
+    private Node tree;
+    private int treeSize;
+    private int visits;
+
+    private Walker<Node> manual;
+    private Walker<Node> fields;
+    private Walker<Node> accessors;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Reports the number of nodes walked, in addition to the number of walks.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class NodeCounter {
+        public long nodes;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial) public void setup()
+    {
+        int[] count = new int[1];
+        tree = Nodes.tree(depth, width, count);
+        treeSize = count[0];
+
+        manual = new Walker<Node>(PRE_VISIT, POST_VISIT) {
+            @Override public Iterable<Node> children (Node node) {
+                return node.children();
+            }
+        };
+        fields = new ReflectiveFieldWalker<>(Node.class, PRE_VISIT, POST_VISIT);
+        accessors = new ReflectiveAccessorWalker<>(Node.class, PRE_VISIT, POST_VISIT);
+
+        for (Walker<Node> walker: Arrays.asList(manual, fields, accessors))
+            walker.registerFallback((type, node) -> ++visits);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int walk (Walker<Node> walker, NodeCounter counter)
+    {
+        walker.walk(tree);
+        counter.nodes += treeSize;
+        return visits;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int manualWalker (NodeCounter counter) {
+        return walk(manual, counter);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int reflectiveFieldWalker (NodeCounter counter) {
+        return walk(fields, counter);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Benchmark public int reflectiveAccessorWalker (NodeCounter counter) {
+        return walk(accessors, counter);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -20,6 +20,7 @@ val website = "https://github.com/norswap/${project.name}"
 val vcs = "https://github.com/norswap/${project.name}.git"
 
 sourceSets.main.get().java.srcDir("src")
+sourceSets.test.get().java.srcDir("test")
 
 java {
     withSourcesJar()
@@ -116,6 +117,77 @@ tasks.register("deploy") {
     closeAndReleaseSonatype.mustRunAfter(publishToSonatype)
 }
 
+// === CODE GENERATION =============================================================================
+
+// The primitive collections (ArrayListInt, ArrayStackInt, IntHashSet, IntMultiMap, ...)
+// are expanded from one template per kind of collection. The generated files are checked in: run
+// `./gradlew generatePrimitiveLists` after editing a template. Lines between `// #if <Name>...`
+// and `// #endif` are only kept for the listed primitive types.
+
+val primitiveLists = listOf(
+    listOf("Int",    "int",    "Integer",   "IntStream",    "Arrays.stream(array, 0, size)"),
+    listOf("Long",   "long",   "Long",      "LongStream",   "Arrays.stream(array, 0, size)"),
+    listOf("Double", "double", "Double",    "DoubleStream", "Arrays.stream(array, 0, size)"),
+    listOf("Float",  "float",  "Float",     "DoubleStream", "IntStream.range(0, size).mapToDouble(i -> array[i])"),
+    listOf("Byte",   "byte",   "Byte",      "IntStream",    "IntStream.range(0, size).map(i -> array[i])"),
+    listOf("Char",   "char",   "Character", "IntStream",    "IntStream.range(0, size).map(i -> array[i])"))
+
+// log2 of the size in bytes of each primitive type.
+val primitiveShifts = mapOf("Int" to 2, "Long" to 3, "Double" to 3, "Float" to 2, "Byte" to 0, "Char" to 1)
+
+// Templates (in templates/), with the package directory and class name (`#Name#` standing for
+// the name of the primitive type) of the generated files, and the primitive types to generate them
+// for.
+class PrimitiveTemplate(val template: String, val dir: String, val name: String, val types: List<String>)
+
+val primitiveTemplates = listOf(
+    PrimitiveTemplate("ArrayListPrimitive",        "data/structures", "ArrayList#Name#",        primitiveLists.map { it[0] }),
+    PrimitiveTemplate("ChunkedArrayListPrimitive", "data/structures", "ChunkedArrayList#Name#", primitiveLists.map { it[0] }),
+    PrimitiveTemplate("ArrayStackPrimitive",       "data/structures", "ArrayStack#Name#",       listOf("Int", "Long")),
+    PrimitiveTemplate("OffHeapArrayListPrimitive", "data/structures", "OffHeapArrayList#Name#", listOf("Int", "Long")),
+    PrimitiveTemplate("PrimitiveHashSet",          "data/structures", "#Name#HashSet",          listOf("Int", "Long")),
+    PrimitiveTemplate("PrimitiveMultiMap",         "multimap",        "#Name#MultiMap",         listOf("Int", "Long")))
+
+fun expandPrimitiveList(lines: List<String>, spec: List<String>): String {
+    val (name, type, boxed, stream, streamOf) = spec
+    var keep = true
+    val text = lines.filter {
+        val line = it.trim()
+        when {
+            line.startsWith("// #if ") -> { keep = name in line.split(" ").drop(2); false }
+            line == "// #endif" -> { keep = true; false }
+            else -> keep
+        }
+    }.joinToString("\n", postfix = "\n")
+    val shift = primitiveShifts.getValue(name)
+    val imports = setOf(stream, if ("IntStream" in streamOf) "IntStream" else stream)
+        .sorted().joinToString("\n") { "import java.util.stream.$it;" }
+    return text
+        .replace("#Name#", name)
+        .replace("#type#", type)
+        .replace("#Boxed#", boxed)
+        .replace("#sumType#", if (type == "double") "double" else "long")
+        .replace("#shift#", "$shift")
+        .replace("#maxChunkShift#", "${30 - shift}") // chunks span at most 2^30 bytes
+        .replace("#Stream#", stream)
+        .replace("#streamOf#", streamOf)
+        .replace("#streamImports#", imports)
+}
+
+tasks.register("generatePrimitiveLists") {
+    inputs.files(primitiveTemplates.map { "templates/${it.template}.java" })
+    doLast {
+        for (template in primitiveTemplates) {
+            val lines = file("templates/${template.template}.java").readLines()
+            for (spec in primitiveLists.filter { it[0] in template.types }) {
+                val className = template.name.replace("#Name#", spec[0])
+                file("src/norswap/utils/${template.dir}/$className.java")
+                    .writeText(expandPrimitiveList(lines, spec))
+            }
+        }
+    }
+}
+
 // === DEPENDENCIES ================================================================================
 
 repositories {
@@ -1 +1,2 @@
-rootProject.name = "utils"
\ No newline at end of file
+rootProject.name = "utils"
+include("bench")
@@ -127,6 +127,58 @@ public final class NArrays
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns a copy of {@code array} whose size is the least power of two greater or equal
+     * to {@code minSize}. Max admissible value for minSize is 2^30.
+     */
+    public static double[] resizeBinaryPower (double[] array, int minSize)
+    {
+        int size = 1;
+        while (size < minSize) size <<= 1;
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a copy of {@code array} whose size is the least power of two greater or equal
+     * to {@code minSize}. Max admissible value for minSize is 2^30.
+     */
+    public static float[] resizeBinaryPower (float[] array, int minSize)
+    {
+        int size = 1;
+        while (size < minSize) size <<= 1;
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a copy of {@code array} whose size is the least power of two greater or equal
+     * to {@code minSize}. Max admissible value for minSize is 2^30.
+     */
+    public static byte[] resizeBinaryPower (byte[] array, int minSize)
+    {
+        int size = 1;
+        while (size < minSize) size <<= 1;
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a copy of {@code array} whose size is the least power of two greater or equal
+     * to {@code minSize}. Max admissible value for minSize is 2^30.
+     */
+    public static char[] resizeBinaryPower (char[] array, int minSize)
+    {
+        int size = 1;
+        while (size < minSize) size <<= 1;
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Easy way to create an array with type inference.
      * <p>
@@ -0,0 +1,6 @@
+package norswap.utils.data.functions;
+
+@FunctionalInterface
+public interface IntIntConsumer {
+    void accept(int key, int value);
+}
@@ -0,0 +1,6 @@
+package norswap.utils.data.functions;
+
+@FunctionalInterface
+public interface IntObjConsumer<T> {
+    void accept(int key, T value);
+}
@@ -0,0 +1,6 @@
+package norswap.utils.data.functions;
+
+@FunctionalInterface
+public interface LongLongConsumer {
+    void accept(long key, long value);
+}
@@ -0,0 +1,6 @@
+package norswap.utils.data.functions;
+
+@FunctionalInterface
+public interface LongObjConsumer<T> {
+    void accept(long key, T value);
+}
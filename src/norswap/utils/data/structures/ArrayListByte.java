@@ -0,0 +1,391 @@
+// Generated from templates/ArrayListPrimitive.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.data.structures;
+
+import norswap.utils.NArrays;
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * A very basic resizable array that holds {@code byte} values, without boxing. It also supports
+ * a basic stack interface.
+ *
+ * <p>When the backing array is resized, it is expanded to the closest superior power of 2.
+ *
+ * <p>The array is never shrunk in capacity when items are removed.
+ */
+public final class ArrayListByte implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private byte[] array;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a list with the given initial capacity.
+     */
+    public ArrayListByte (int capacity) {
+        this.array = new byte[capacity];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ArrayListByte() {
+        this(8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements in this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the list has no elements.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current capacity of the backing array.
+     */
+    public int capacity() {
+        return array.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the array currently backing this list. Beware it is likely bigger than the size
+     * of the list.
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Ensures the backing array can hold at least {@code capacity} elements without being resized.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        if (array.length < capacity)
+            array = NArrays.resizeBinaryPower(array, capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the element at the specified position in this list with the specified element.
+     */
+    public void set (int i, byte v)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        array[i] = v;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the element at the specified position in this list.
+     */
+    public byte get (int i)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        return array[i];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the specified element to the end of this list.
+     */
+    public void add (byte v)
+    {
+        if (array.length < size + 1)
+            array = NArrays.resizeBinaryPower(array, size + 1);
+        array[size++] = v;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends all the elements of {@code items} to the end of this list.
+     */
+    public void addAll (byte[] items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the elements of {@code items} in {@code [from, to[} to the end of this list.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     */
+    public void addAll (byte[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        int n = to - from;
+        ensureCapacity(size + n);
+        System.arraycopy(items, from, array, size, n);
+        size += n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends all the elements of {@code list} (which may be this list) to the end of this list.
+     */
+    public void addAll (ArrayListByte list) {
+        addAll(list.array, 0, list.size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the elements in {@code [from, to[}, shifting the following elements down.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for this list.
+     */
+    public void removeRange (int from, int to)
+    {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        System.arraycopy(array, to, array, from, size - to);
+        size -= to - from;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all elements from this list.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets all the elements of this list to {@code v}.
+     */
+    public void fill (byte v) {
+        Arrays.fill(array, 0, size, v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets all the elements in {@code [from, to[} to {@code v}.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for this list.
+     */
+    public void fill (int from, int to, byte v)
+    {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        Arrays.fill(array, from, to, v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sorts the elements of this list in ascending order (as per {@link Arrays#sort(byte[])}).
+     */
+    public void sort() {
+        Arrays.sort(array, 0, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Searches for {@code key} in this list, which must be sorted, and returns its index if found,
+     * or {@code -(insertion point) - 1} otherwise (as per {@link Arrays#binarySearch(byte[],
+     * byte)}).
+     */
+    public int binarySearch (byte key) {
+        return Arrays.binarySearch(array, 0, size, key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the elements of this list.
+     */
+    public byte[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a stream over the elements of this list. The list must not be modified until the
+     * stream's terminal operation completes.
+     */
+    public IntStream stream()
+    {
+        byte[] array = this.array;
+        return IntStream.range(0, size).map(i -> array[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public void push (byte item) {
+        add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public final void push (byte... items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public byte pop()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        return array[--size];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     */
+    public void pop (int n)
+    {
+        if (size < n) throw new NoSuchElementException();
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     * @throws IndexOutOfBoundsException if {@code dest} cannot hold the items starting at
+     * {@code offset}, in which case no items are removed.
+     */
+    public void pop (int n, byte[] dest, int offset)
+    {
+        if (size < n) throw new NoSuchElementException();
+        System.arraycopy(array, size - n, dest, offset, n);
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public byte peek()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        return array[size-1];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} items below the top of the stack (0 = top).
+     * @throws NoSuchElementException if the stack does not have that many items.
+     */
+    public byte back (int n)
+    {
+        if (size() <= n) throw new NoSuchElementException();
+        return array[size - 1 - n];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public ArrayListByte clone()
+    {
+        try {
+            ArrayListByte out = (ArrayListByte) super.clone();
+            out.array = array.clone();
+            out.size = size;
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < size; ++i)
+            b.append(array[i]).append(", ");
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("]");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 1;
+        for (int i = 0; i < size; ++i)
+            hashCode = 31*hashCode + Byte.hashCode(array[i]);
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof ArrayListByte))
+            return false;
+
+        ArrayListByte other = (ArrayListByte) o;
+
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; ++i)
+            if (Byte.compare(array[i], other.array[i]) != 0)
+                return false;
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
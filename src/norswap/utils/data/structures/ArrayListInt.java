@@ -1,11 +1,17 @@
+// Generated from templates/ArrayListPrimitive.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
 package norswap.utils.data.structures;
 
 import norswap.utils.NArrays;
 import norswap.utils.Strings;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
- * A very basic resizable array that holds integers. It also supports a basic stack interface.
+ * A very basic resizable array that holds {@code int} values, without boxing. It also supports
+ * a basic stack interface.
  *
  * <p>When the backing array is resized, it is expanded to the closest superior power of 2.
  *
@@ -45,6 +51,15 @@ public final class ArrayListInt implements Cloneable
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns true iff the list has no elements.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Returns the current capacity of the backing array.
      */
@@ -64,6 +79,17 @@ public final class ArrayListInt implements Cloneable
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Ensures the backing array can hold at least {@code capacity} elements without being resized.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        if (array.length < capacity)
+            array = NArrays.resizeBinaryPower(array, capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Replaces the element at the specified position in this list with the specified element.
      */
@@ -98,6 +124,183 @@ public final class ArrayListInt implements Cloneable
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Appends all the elements of {@code items} to the end of this list.
+     */
+    public void addAll (int[] items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the elements of {@code items} in {@code [from, to[} to the end of this list.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     */
+    public void addAll (int[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        int n = to - from;
+        ensureCapacity(size + n);
+        System.arraycopy(items, from, array, size, n);
+        size += n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends all the elements of {@code list} (which may be this list) to the end of this list.
+     */
+    public void addAll (ArrayListInt list) {
+        addAll(list.array, 0, list.size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the elements in {@code [from, to[}, shifting the following elements down.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for this list.
+     */
+    public void removeRange (int from, int to)
+    {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        System.arraycopy(array, to, array, from, size - to);
+        size -= to - from;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all elements from this list.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets all the elements of this list to {@code v}.
+     */
+    public void fill (int v) {
+        Arrays.fill(array, 0, size, v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets all the elements in {@code [from, to[} to {@code v}.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for this list.
+     */
+    public void fill (int from, int to, int v)
+    {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        Arrays.fill(array, from, to, v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sorts the elements of this list in ascending order (as per {@link Arrays#sort(int[])}).
+     */
+    public void sort() {
+        Arrays.sort(array, 0, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Searches for {@code key} in this list, which must be sorted, and returns its index if found,
+     * or {@code -(insertion point) - 1} otherwise (as per {@link Arrays#binarySearch(int[],
+     * int)}).
+     */
+    public int binarySearch (int key) {
+        return Arrays.binarySearch(array, 0, size, key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the sum of the elements of this list (0 if empty).
+     */
+    public long sum()
+    {
+        long sum = 0;
+        for (int i = 0; i < size; ++i)
+            sum += array[i];
+        return sum;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the smallest element of this list (as per {@link Math#min(int, int)}).
+     * @throws NoSuchElementException if the list is empty.
+     */
+    public int min()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        int min = array[0];
+        for (int i = 1; i < size; ++i)
+            min = Math.min(min, array[i]);
+        return min;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the largest element of this list (as per {@link Math#max(int, int)}).
+     * @throws NoSuchElementException if the list is empty.
+     */
+    public int max()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        int max = array[0];
+        for (int i = 1; i < size; ++i)
+            max = Math.max(max, array[i]);
+        return max;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces each element of this list by the result of applying {@code f} to it.
+     */
+    public void map (IntUnaryOperator f)
+    {
+        for (int i = 0; i < size; ++i)
+            array[i] = f.applyAsInt(array[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the elements of this list.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a stream over the elements of this list. The list must not be modified until the
+     * stream's terminal operation completes.
+     */
+    public IntStream stream()
+    {
+        int[] array = this.array;
+        return Arrays.stream(array, 0, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Pushes {@code item} at the top of the stack.
      */
@@ -111,8 +314,7 @@ public final class ArrayListInt implements Cloneable
      * Pushes {@code item} at the top of the stack.
      */
     public final void push (int... items) {
-        for (int item: items)
-            add(item);
+        addAll(items, 0, items.length);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -142,6 +344,23 @@ public final class ArrayListInt implements Cloneable
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Removes the {@code n} items at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     * @throws IndexOutOfBoundsException if {@code dest} cannot hold the items starting at
+     * {@code offset}, in which case no items are removed.
+     */
+    public void pop (int n, int[] dest, int offset)
+    {
+        if (size < n) throw new NoSuchElementException();
+        System.arraycopy(array, size - n, dest, offset, n);
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * @return the item at the top of the stack.
      * @throws NoSuchElementException if the stack is empty.
@@ -198,7 +417,7 @@ public final class ArrayListInt implements Cloneable
     {
         int hashCode = 1;
         for (int i = 0; i < size; ++i)
-            hashCode = 31*hashCode + i;
+            hashCode = 31*hashCode + Integer.hashCode(array[i]);
         return hashCode;
     }
 
@@ -213,8 +432,11 @@ public final class ArrayListInt implements Cloneable
 
         ArrayListInt other = (ArrayListInt) o;
 
+        if (size != other.size)
+            return false;
+
         for (int i = 0; i < size; ++i)
-            if (array[i] != other.array[i])
+            if (Integer.compare(array[i], other.array[i]) != 0)
                 return false;
 
         return true;
@@ -1,10 +1,12 @@
 package norswap.utils.data.structures;
 
+import norswap.utils.Strings;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 import java.util.function.IntFunction;
 
 import static norswap.utils.Util.cast;
@@ -15,6 +17,10 @@ import static norswap.utils.Util.cast;
  *
  * <p>Compared to {@link java.util.ArrayDeque}, this enables indexing, but doesn't allow queue
  * operations.
+ *
+ * <p>To consume the top of the stack without allocating, use the methods that take a destination
+ * array (e.g. {@link #pop(int, Object[], int)}), or a {@link Window} (e.g. {@link
+ * #topWindow(int, Window)}) instead of a sublist.
  */
 public final class ArrayStack<T> extends ArrayList<T>
 {
@@ -132,6 +138,61 @@ public final class ArrayStack<T> extends ArrayList<T>
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Returns a {@link Window} over the {@code n} elements at the top of the stack.
+     *
+     * <p>Unlike {@link #top(int)}, the window does not check for concurrent modifications.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public Window<T> topWindow (int n) {
+        return topWindow(n, new Window<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the {@code n} elements at the top of the stack, and returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public Window<T> topWindow (int n, Window<T> window)
+    {
+        if (n < 0 || size() < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        return window.set(this, size() - n, size());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link Window} over the elements between {@code index} and the top of the stack.
+     *
+     * <p>Unlike {@link #from(int)}, the window does not check for concurrent modifications.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public Window<T> fromWindow (int index) {
+        return fromWindow(index, new Window<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the elements between {@code index} and the top of the stack, and
+     * returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public Window<T> fromWindow (int index, Window<T> window)
+    {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return window.set(this, index, size());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Removes the top {@code n} elements of the stack.
      *
@@ -142,7 +203,7 @@ public final class ArrayStack<T> extends ArrayList<T>
     {
         if (n < 0 || size() < n)
             throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
-        top(n).clear();
+        removeRange(size() - n, size());
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -157,7 +218,7 @@ public final class ArrayStack<T> extends ArrayList<T>
     {
         if (index < 0 || size() < index)
             throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
-        from(index).clear();
+        removeRange(index, size());
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -187,14 +248,29 @@ public final class ArrayStack<T> extends ArrayList<T>
     {
         if (n < 0 || size() < n)
             throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
-        List<T> sub = top(n);
-        T[] out = sub.toArray(makeArray.apply(n));
-        sub.clear();
+        T[] out = makeArray.apply(n);
+        pop(n, out, 0);
         return out;
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Removes the {@code n} elements at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the elements starting at {@code offset}, in which case no elements are
+     * removed.
+     */
+    public void pop (int n, T[] dest, int offset)
+    {
+        peek(n, dest, offset);
+        removeRange(size() - n, size());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Removes and returns the the elements between {@code index} and the top of the stack,
      * in an array created by {@code makeArray}.
@@ -210,6 +286,23 @@ public final class ArrayStack<T> extends ArrayList<T>
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Removes the elements between {@code index} and the top of the stack, and copies them (from
+     * bottom to top) into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the elements starting at {@code offset}, in which case no elements
+     * are removed.
+     */
+    public void popFrom (int index, T[] dest, int offset)
+    {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        pop(size() - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Removes and returns the item at the top of the stack, or null if the stack is empty.
      */
@@ -243,7 +336,30 @@ public final class ArrayStack<T> extends ArrayList<T>
     {
         if (n < 0 || size() < n)
             throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
-        return top(n).toArray(makeArray.apply(n));
+        T[] out = makeArray.apply(n);
+        peek(n, out, 0);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the {@code n} elements at the top of the stack (from bottom to top) into {@code dest},
+     * starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the elements starting at {@code offset}.
+     */
+    public void peek (int n, T[] dest, int offset)
+    {
+        if (n < 0 || size() < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        if (offset < 0 || offset > dest.length - n)
+            throw new IndexOutOfBoundsException(
+                "Cannot copy [" + n + "] elements at offset [" + offset + "] "
+                + "in array of length [" + dest.length + "]");
+        for (int i = size() - n; i < size(); ++i)
+            dest[offset++] = get(i);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -263,6 +379,22 @@ public final class ArrayStack<T> extends ArrayList<T>
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Copies the elements between {@code index} and the top of the stack (from bottom to top) into
+     * {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the elements starting at {@code offset}.
+     */
+    public void peekFrom (int index, T[] dest, int offset)
+    {
+        if (index < 0 || size() < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        peek(size() - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * @return the item at the top of the stack, or null if the stack is empty.
      */
@@ -301,4 +433,100 @@ public final class ArrayStack<T> extends ArrayList<T>
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A range of elements of an {@link ArrayStack} or a {@link ChunkedArrayStack}, read directly
+     * from the stack, without copying. Indices in the window are relative to its start.
+     *
+     * <p>A window remains valid as long as the elements it covers are not removed (pushing new
+     * elements is fine). Unlike sublists, this is not checked.
+     *
+     * <p>Windows can be reused to avoid allocation: create an empty window with {@link
+     * #Window()}, then repeatedly pass it to {@link #topWindow(int, Window)} or {@link
+     * #fromWindow(int, Window)} (or their {@link ChunkedArrayStack} counterparts).
+     */
+    public static final class Window<T>
+    {
+        private List<T> stack;
+        private int start;
+        private int end;
+
+        /**
+         * Creates an empty window, not attached to any stack.
+         */
+        public Window() {}
+
+        Window<T> set (List<T> stack, int start, int end) {
+            this.stack = stack;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        /**
+         * Returns the number of elements in the window.
+         */
+        public int size() {
+            return end - start;
+        }
+
+        /**
+         * Returns the index in the stack of the first element of the window.
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * Returns the {@code i}-th element of the window.
+         *
+         * @throws IndexOutOfBoundsException if {@code i} is outside {@code [0, size()-1]}.
+         */
+        public T get (int i)
+        {
+            if (i < 0 || i >= end - start)
+                throw new IndexOutOfBoundsException("Index [" + i + "] invalid for window size ["
+                    + (end - start) + "]");
+            return stack.get(start + i);
+        }
+
+        /**
+         * Calls {@code consumer} on each element of the window, in order.
+         */
+        public void forEach (Consumer<? super T> consumer) {
+            for (int i = start; i < end; ++i)
+                consumer.accept(stack.get(i));
+        }
+
+        /**
+         * Copies the elements of the window into {@code dest}, starting at index {@code offset}.
+         */
+        public void copyTo (T[] dest, int offset) {
+            for (int i = start; i < end; ++i)
+                dest[offset++] = stack.get(i);
+        }
+
+        /**
+         * Returns the elements of the window, in an array created by {@code makeArray}.
+         */
+        public T[] toArray (IntFunction<T[]> makeArray)
+        {
+            T[] out = makeArray.apply(end - start);
+            copyTo(out, 0);
+            return out;
+        }
+
+        @Override public String toString()
+        {
+            StringBuilder b = new StringBuilder("[");
+            for (int i = start; i < end; ++i)
+                b.append(stack.get(i)).append(", ");
+            if (b.length() > 1)
+                Strings.pop(b, 2);
+            b.append("]");
+            return b.toString();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
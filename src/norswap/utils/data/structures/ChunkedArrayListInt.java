@@ -0,0 +1,384 @@
+// Generated from templates/ChunkedArrayListPrimitive.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.data.structures;
+
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A resizable array that holds {@code int} values, without boxing, and that stores them in
+ * fixed-size chunks rather than in a single array. It also supports a basic stack interface.
+ *
+ * <p>Unlike {@link ArrayListInt}, growing the list never copies the items: a new chunk is
+ * allocated, and only the (much smaller) array of chunk references is ever copied. This avoids
+ * latency spikes for lists that grow to millions of items, at the cost of an extra indirection on
+ * every access.
+ *
+ * <p>Chunks are never released when items are removed, except by {@link #trimToSize()}.
+ */
+public final class ChunkedArrayListInt implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Chunks holding the items. Only the first {@link #chunkCount} are allocated. */
+    private int[][] chunks;
+
+    private int chunkCount;
+
+    /** log2 of the chunk size. */
+    private final int shift;
+
+    /** Chunk size minus one. */
+    private final int mask;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ChunkedArrayListInt (int chunkSize, int capacity)
+    {
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1)
+            throw new IllegalArgumentException("chunk size must be a power of 2: " + chunkSize);
+        if (capacity < 0)
+            throw new IllegalArgumentException("negative capacity: " + capacity);
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+        this.chunks = new int[4][];
+        ensureCapacity(capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a list with the given initial capacity.
+     */
+    public ChunkedArrayListInt (int capacity) {
+        this(DEFAULT_CHUNK_SIZE, capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ChunkedArrayListInt() {
+        this(DEFAULT_CHUNK_SIZE, 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a list whose chunks hold {@code chunkSize} items each.
+     *
+     * @throws IllegalArgumentException if {@code chunkSize} is not a power of 2.
+     */
+    public static ChunkedArrayListInt withChunkSize (int chunkSize) {
+        return new ChunkedArrayListInt(chunkSize, 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements in this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the list has no elements.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements the currently allocated chunks can hold.
+     */
+    public int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) chunkCount << shift);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements per chunk.
+     */
+    public int chunkSize() {
+        return mask + 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Allocates chunks until the list can hold at least {@code capacity} elements.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        int needed = (int) (((long) capacity + mask) >>> shift);
+        if (needed <= chunkCount) return;
+        if (needed > chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(needed, chunks.length * 2));
+        for (; chunkCount < needed; ++chunkCount)
+            chunks[chunkCount] = new int[mask + 1];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Releases the chunks that do not hold any element.
+     */
+    public void trimToSize()
+    {
+        int needed = (int) (((long) size + mask) >>> shift);
+        chunks = Arrays.copyOf(chunks, Math.max(needed, 4));
+        chunkCount = needed;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the element at the specified position in this list with the specified element.
+     */
+    public void set (int i, int v)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        chunks[i >>> shift][i & mask] = v;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the element at the specified position in this list.
+     */
+    public int get (int i)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        return chunks[i >>> shift][i & mask];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the specified element to the end of this list.
+     */
+    public void add (int v)
+    {
+        if (size >>> shift == chunkCount)
+            ensureCapacity(size + 1);
+        chunks[size >>> shift][size & mask] = v;
+        ++size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends all the elements of {@code items} to the end of this list.
+     */
+    public void addAll (int[] items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the elements of {@code items} in {@code [from, to[} to the end of this list.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     */
+    public void addAll (int[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        ensureCapacity(size + (to - from));
+        while (from < to) {
+            int offset = size & mask;
+            int n = Math.min(to - from, mask + 1 - offset);
+            System.arraycopy(items, from, chunks[size >>> shift], offset, n);
+            from += n;
+            size += n;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all elements from this list. The chunks are kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the elements of this list.
+     */
+    public int[] toArray()
+    {
+        int[] out = new int[size];
+        for (int done = 0; done < size; done += mask + 1)
+            System.arraycopy(chunks[done >>> shift], 0, out, done, Math.min(size - done, mask + 1));
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public void push (int item) {
+        add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public final void push (int... items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public int pop()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        --size;
+        return chunks[size >>> shift][size & mask];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     */
+    public void pop (int n)
+    {
+        if (size < n) throw new NoSuchElementException();
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     * @throws IndexOutOfBoundsException if {@code dest} cannot hold the items starting at
+     * {@code offset}, in which case no items are removed.
+     */
+    public void pop (int n, int[] dest, int offset)
+    {
+        if (size < n) throw new NoSuchElementException();
+        if (n < 0 || offset < 0 || offset > dest.length - n)
+            throw new IndexOutOfBoundsException();
+        for (int i = size - n; i < size; ) {
+            int len = Math.min(size - i, mask + 1 - (i & mask));
+            System.arraycopy(chunks[i >>> shift], i & mask, dest, offset, len);
+            offset += len;
+            i += len;
+        }
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public int peek()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        return get(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} items below the top of the stack (0 = top).
+     * @throws NoSuchElementException if the stack does not have that many items.
+     */
+    public int back (int n)
+    {
+        if (size <= n) throw new NoSuchElementException();
+        return get(size - 1 - n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public ChunkedArrayListInt clone()
+    {
+        try {
+            ChunkedArrayListInt out = (ChunkedArrayListInt) super.clone();
+            out.chunks = chunks.clone();
+            for (int i = 0; i < chunkCount; ++i)
+                out.chunks[i] = chunks[i].clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < size; ++i)
+            b.append(get(i)).append(", ");
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("]");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 1;
+        for (int i = 0; i < size; ++i)
+            hashCode = 31*hashCode + Integer.hashCode(get(i));
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof ChunkedArrayListInt))
+            return false;
+
+        ChunkedArrayListInt other = (ChunkedArrayListInt) o;
+
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; ++i)
+            if (Integer.compare(get(i), other.get(i)) != 0)
+                return false;
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
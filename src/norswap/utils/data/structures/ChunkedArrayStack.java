@@ -0,0 +1,630 @@
+package norswap.utils.data.structures;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * A stack with the same interface as {@link ArrayStack}, that stores its elements in fixed-size
+ * chunks rather than in a single array. Elements are pushed and popped at the end of the list.
+ *
+ * <p>Unlike {@link ArrayStack}, growing the stack never copies the elements: a new chunk is
+ * allocated, and only the (much smaller) array of chunk references is ever copied. This avoids
+ * latency spikes for stacks that grow to millions of elements, at the cost of an extra indirection
+ * on every access.
+ *
+ * <p>Inserting or removing elements anywhere else than at the top of the stack is supported, but
+ * takes linear time, as for {@link ArrayStack}.
+ *
+ * <p>Chunks are never released when elements are removed, except by {@link #trimToSize()}.
+ *
+ * <p>To consume the top of the stack without allocating, use the methods that take a destination
+ * array (e.g. {@link #pop(int, Object[], int)}), or an {@link ArrayStack.Window} (e.g. {@link
+ * #topWindow(int, ArrayStack.Window)}) instead of a sublist.
+ */
+public final class ChunkedArrayStack<T> extends AbstractList<T> implements RandomAccess, Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Chunks holding the elements. Only the first {@link #chunkCount} are allocated. */
+    private Object[][] chunks = new Object[4][];
+
+    private int chunkCount;
+
+    /** log2 of the chunk size. */
+    private final int shift;
+
+    /** Chunk size minus one. */
+    private final int mask;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ChunkedArrayStack (int chunkSize, int capacity)
+    {
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1)
+            throw new IllegalArgumentException("chunk size must be a power of 2: " + chunkSize);
+        if (capacity < 0)
+            throw new IllegalArgumentException("negative capacity: " + capacity);
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+        ensureCapacity(capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ChunkedArrayStack() {
+        this(DEFAULT_CHUNK_SIZE, 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new stack with the given capacity.
+     */
+    public ChunkedArrayStack (int n) {
+        this(DEFAULT_CHUNK_SIZE, n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new stack whose chunks hold {@code chunkSize} elements each.
+     *
+     * @throws IllegalArgumentException if {@code chunkSize} is not a power of 2.
+     */
+    public static <T> ChunkedArrayStack<T> withChunkSize (int chunkSize) {
+        return new ChunkedArrayStack<>(chunkSize, 0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new stack with the given elements.
+     */
+    @SafeVarargs
+    public ChunkedArrayStack (T... elements) {
+        this(DEFAULT_CHUNK_SIZE, elements.length);
+        add(elements);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements the currently allocated chunks can hold.
+     */
+    public int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) chunkCount << shift);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of elements per chunk.
+     */
+    public int chunkSize() {
+        return mask + 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Allocates chunks until the stack can hold at least {@code capacity} elements.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        int needed = (int) (((long) capacity + mask) >>> shift);
+        if (needed <= chunkCount) return;
+        if (needed > chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(needed, chunks.length * 2));
+        for (; chunkCount < needed; ++chunkCount)
+            chunks[chunkCount] = new Object[mask + 1];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Releases the chunks that do not hold any element.
+     */
+    public void trimToSize()
+    {
+        int needed = (int) (((long) size + mask) >>> shift);
+        chunks = Arrays.copyOf(chunks, Math.max(needed, 4));
+        chunkCount = needed;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private String indexOutOfBoundsMessage (int i) {
+        return "Index [" + i + "] invalid for stack size [" + size + "]";
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private String amountOutOfBoundsMessage (int n) {
+        return "Amount [" + n + "] invalid for stack size [" + size + "]";
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public T get (int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return cast(chunks[index >>> shift][index & mask]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public T set (int index, T element)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        Object[] chunk = chunks[index >>> shift];
+        T old = cast(chunk[index & mask]);
+        chunk[index & mask] = element;
+        return old;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean add (T element)
+    {
+        if (size >>> shift == chunkCount)
+            ensureCapacity(size + 1);
+        chunks[size >>> shift][size & mask] = element;
+        ++size;
+        ++modCount;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void add (int index, T element)
+    {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        if (size >>> shift == chunkCount)
+            ensureCapacity(size + 1);
+        for (int i = size; i > index; --i)
+            chunks[i >>> shift][i & mask] = chunks[(i - 1) >>> shift][(i - 1) & mask];
+        chunks[index >>> shift][index & mask] = element;
+        ++size;
+        ++modCount;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public T remove (int index)
+    {
+        T old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override protected void removeRange (int fromIndex, int toIndex)
+    {
+        int n = toIndex - fromIndex;
+        for (int i = toIndex; i < size; ++i)
+            chunks[(i - n) >>> shift][(i - n) & mask] = chunks[i >>> shift][i & mask];
+        for (int i = size - n; i < size; ++i)
+            chunks[i >>> shift][i & mask] = null;
+        size -= n;
+        ++modCount;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void clear() {
+        removeRange(0, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all the elements at the end of the list.
+     *
+     * <p>Identical to {@link #push(Object[])}.
+     */
+    @SafeVarargs
+    public final void add (T... elements)
+    {
+        ensureCapacity(size + elements.length);
+        for (T element: elements)
+            add(element);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     *
+     * <p>Identical to {@link #add(Object)}
+     */
+    public void push (T item) {
+        add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes the elements at the top of the stack.
+     *
+     * <p>Identical to {@link #add(Object[])}.
+     */
+    @SafeVarargs
+    public final void push (T... elements) {
+        add(elements);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes the elements of {@code collection} at the top of the stack.
+     *
+     *  <p>Identical to {@link #addAll(Collection)}.
+     */
+    public void push (Collection<? extends T> collection) {
+        addAll(collection);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a sublist (as per {@link #subList(int, int)}) holding the {@code n} elements at the
+     * top of the stack (end of the array).
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public List<T> top (int n)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        return subList(size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a sublist (as per {@link #subList(int, int)}) holding the elements between {@code
+     * index} and the top of the stack (end of the array).
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public List<T> from (int index)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return subList(index, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an {@link ArrayStack.Window} over the {@code n} elements at the top of the stack.
+     *
+     * <p>Unlike {@link #top(int)}, the window does not check for concurrent modifications.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public ArrayStack.Window<T> topWindow (int n) {
+        return topWindow(n, new ArrayStack.Window<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the {@code n} elements at the top of the stack, and returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public ArrayStack.Window<T> topWindow (int n, ArrayStack.Window<T> window)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        return window.set(this, size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an {@link ArrayStack.Window} over the elements between {@code index} and the top of
+     * the stack.
+     *
+     * <p>Unlike {@link #from(int)}, the window does not check for concurrent modifications.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public ArrayStack.Window<T> fromWindow (int index) {
+        return fromWindow(index, new ArrayStack.Window<>());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the elements between {@code index} and the top of the stack, and
+     * returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public ArrayStack.Window<T> fromWindow (int index, ArrayStack.Window<T> window)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return window.set(this, index, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the top {@code n} elements of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, in which case
+     * no elements are removed.
+     */
+    public void removeTop (int n)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        removeRange(size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the elements between {@code index} and the top of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, in which
+     * case no elements are removed.
+     */
+    public void truncate (int index)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        removeRange(index, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack.
+     *
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public T pop()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return remove(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the {@code n} elements at the top of the stack, in an array created by
+     * {@code makeArray}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, in which case
+     * no elements are removed.
+     */
+    public T[] pop (int n, IntFunction<T[]> makeArray)
+    {
+        T[] out = peek(n, makeArray);
+        removeRange(size - n, size);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} elements at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the elements starting at {@code offset}, in which case no elements are
+     * removed.
+     */
+    public void pop (int n, T[] dest, int offset)
+    {
+        peek(n, dest, offset);
+        removeRange(size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the the elements between {@code index} and the top of the stack,
+     * in an array created by {@code makeArray}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public T[] popFrom (int index, IntFunction<T[]> makeArray)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return pop(size - index, makeArray);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the elements between {@code index} and the top of the stack, and copies them (from
+     * bottom to top) into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the elements starting at {@code offset}, in which case no elements
+     * are removed.
+     */
+    public void popFrom (int index, T[] dest, int offset)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        pop(size - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack, or null if the stack is empty.
+     */
+    public T poll() {
+        return size == 0 ? null : remove(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack.
+     *
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public T peek()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return get(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the {@code n} elements at the top of the stack, in an array created by {@code
+     * makeArray}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public T[] peek (int n, IntFunction<T[]> makeArray)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        T[] out = makeArray.apply(n);
+        peek(n, out, 0);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the {@code n} elements at the top of the stack (from bottom to top) into {@code dest},
+     * starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the elements starting at {@code offset}.
+     */
+    public void peek (int n, T[] dest, int offset)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        if (offset < 0 || offset > dest.length - n)
+            throw new IndexOutOfBoundsException(
+                "Cannot copy [" + n + "] elements at offset [" + offset + "] "
+                + "in array of length [" + dest.length + "]");
+        for (int i = size - n; i < size; ) {
+            int len = Math.min(size - i, mask + 1 - (i & mask));
+            System.arraycopy(chunks[i >>> shift], i & mask, dest, offset, len);
+            i += len;
+            offset += len;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return an array containing the elements between {@code index} and the top of the stack, in
+     * an array created by {@code makeArray}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public T[] peekFrom (int index, IntFunction<T[]> makeArray)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return peek(size - index, makeArray);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the elements between {@code index} and the top of the stack (from bottom to top) into
+     * {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the elements starting at {@code offset}.
+     */
+    public void peekFrom (int index, T[] dest, int offset)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        peek(size - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack, or null if the stack is empty.
+     */
+    public T snoop() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} elements below the top of the stack (0 = top).
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()-1]}.
+     */
+    public T peekBack (int n)
+    {
+        if (n < 0 || size <= n)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(n));
+        return get(size - 1 - n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} elements below the top of the stack (0 = top), or null
+     * if the stack does not have that many elements or {@code n} is negative.
+     */
+    public T snoopBack (int n) {
+        return n < 0 || size <= n ? null : get(size - 1 - n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public ChunkedArrayStack<T> clone()
+    {
+        try {
+            ChunkedArrayStack<T> out = cast(super.clone());
+            out.chunks = chunks.clone();
+            for (int i = 0; i < chunkCount; ++i)
+                out.chunks[i] = chunks[i].clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
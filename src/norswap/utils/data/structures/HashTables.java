@@ -0,0 +1,99 @@
+package norswap.utils.data.structures;
+
+/**
+ * Helpers shared by the open addressing hash tables in this library ({@link IntIntMap} and friends
+ * in this package, {@link norswap.utils.multimap.IntMultiMap} and {@link
+ * norswap.utils.multimap.LongMultiMap}). Tables have a power-of-2 capacity, use linear probing, and
+ * are resized when they become 3/4 full.
+ */
+public final class HashTables
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private HashTables() {}
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Minimum (and default) capacity of a table. */
+    public static final int MIN_CAPACITY = 4;
+
+    /** Maximum capacity of a table. */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of entries above which a table with the given capacity must be resized.
+     */
+    public static int maxFill (int capacity) {
+        return capacity == MAX_CAPACITY ? Integer.MAX_VALUE : capacity - (capacity >>> 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the capacity of a table that can hold {@code expected} entries without being
+     * resized.
+     */
+    public static int capacityFor (int expected)
+    {
+        if (expected < 0) throw new IllegalArgumentException("negative size: " + expected);
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && maxFill(capacity) < expected) capacity <<= 1;
+        return capacity;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Scrambles the bits of a hash, so that keys that only differ in their upper bits (e.g.
+     * multiples of a power of 2) don't collide in the low bits used to index the table.
+     */
+    public static int mix (int hash)
+    {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the home slot of the key in a table with the given mask ({@code capacity - 1}).
+     */
+    public static int slot (int key, int mask) {
+        return mix(key) & mask;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the home slot of the key in a table with the given mask ({@code capacity - 1}).
+     */
+    public static int slot (long key, int mask) {
+        return mix((int) (key ^ (key >>> 32))) & mask;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the home slot of the key in a table with the given mask ({@code capacity - 1}).
+     */
+    public static int slot (Object key, int mask) {
+        return mix(key.hashCode()) & mask;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * During a removal, indicates whether the entry at {@code pos}, whose home slot is {@code
+     * slot}, can be moved back to the emptied slot {@code last} without becoming unreachable.
+     */
+    public static boolean canShift (int last, int slot, int pos)
+    {
+        return last <= pos
+            ? last >= slot || slot > pos
+            : last >= slot && slot > pos;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
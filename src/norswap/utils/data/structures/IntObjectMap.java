@@ -0,0 +1,328 @@
+package norswap.utils.data.structures;
+
+import norswap.utils.Strings;
+import norswap.utils.data.functions.IntObjConsumer;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * A hash map from {@code int} keys to values of type {@code V}, that does not box keys.
+ *
+ * <p>The map uses open addressing with linear probing: keys and values are stored in two parallel
+ * arrays whose size is a power of 2, which are resized when they become 3/4 full. Key {@code 0} is
+ * used to mark empty slots, so its value is stored separately. Removals shift the following
+ * entries back, so the map never accumulates tombstones.
+ *
+ * <p>Null values are permitted, but {@link #get(int)} does not distinguish between a null value
+ * and a missing key: use {@link #containsKey(int)} for that.
+ *
+ * <p>Iteration is performed via {@link #forEach(IntObjConsumer)}, which does not allocate.
+ *
+ * <p>The backing arrays are never shrunk in capacity when items are removed.
+ */
+public final class IntObjectMap<V> implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private int[] keys;
+
+    private Object[] values;
+
+    /** Number of entries stored in {@link #keys} (i.e. excluding key 0). */
+    private int fill;
+
+    private boolean hasZeroKey;
+
+    private V zeroValue;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a map that can hold {@code expected} entries without being resized.
+     */
+    public IntObjectMap (int expected) {
+        int capacity = HashTables.capacityFor(expected);
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public IntObjectMap() {
+        this(8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of entries in this map.
+     */
+    public int size() {
+        return hasZeroKey ? fill + 1 : fill;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the map has no entries.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current capacity of the backing arrays.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the slot at which {@code key} (which must not be 0) is stored, or -1 if absent.
+     */
+    private int find (int key)
+    {
+        int mask = keys.length - 1;
+        for (int i = HashTables.slot(key, mask); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) return i;
+            if (k == 0)   return -1;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the map contains an entry for {@code key}.
+     */
+    public boolean containsKey (int key) {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value associated with {@code key}, or null if the map does not contain the key.
+     */
+    public V get (int key) {
+        return getOrDefault(key, null);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value associated with {@code key}, or {@code defaultValue} if the map does not
+     * contain the key.
+     */
+    public V getOrDefault (int key, V defaultValue)
+    {
+        if (key == 0) return hasZeroKey ? zeroValue : defaultValue;
+        int i = find(key);
+        return i < 0 ? defaultValue : cast(values[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates {@code value} with {@code key}, replacing any previous value, and returns the
+     * previous value (or null if there was none).
+     */
+    public V put (int key, V value)
+    {
+        if (key == 0) {
+            V old = zeroValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+
+        int mask = keys.length - 1;
+        int i = HashTables.slot(key, mask);
+        for (int k = keys[i]; k != 0; k = keys[i]) {
+            if (k == key) {
+                V old = cast(values[i]);
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++fill > HashTables.maxFill(keys.length))
+            rehash(keys.length * 2);
+        return null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the entry for {@code key}, if present, and returns its value (or null if there was no
+     * such entry).
+     */
+    public V remove (int key)
+    {
+        if (key == 0) {
+            V old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            return old;
+        }
+        int i = find(key);
+        if (i < 0) return null;
+        V old = cast(values[i]);
+        shiftBack(i);
+        --fill;
+        return old;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        fill = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code consumer} on each (key, value) pair in the map, in unspecified order. The map
+     * must not be modified during the iteration.
+     */
+    public void forEach (IntObjConsumer<? super V> consumer)
+    {
+        if (hasZeroKey)
+            consumer.accept(0, zeroValue);
+        for (int i = 0; i < keys.length; ++i)
+            if (keys[i] != 0)
+                consumer.accept(keys[i], cast(values[i]));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Empties slot {@code pos}, moving back the entries that follow it in their probe sequence.
+     */
+    private void shiftBack (int pos)
+    {
+        int mask = keys.length - 1;
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            int k;
+            while (true) {
+                k = keys[pos];
+                if (k == 0) {
+                    keys[last] = 0;
+                    values[last] = null;
+                    return;
+                }
+                if (HashTables.canShift(last, HashTables.slot(k, mask), pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void rehash (int capacity)
+    {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+
+        for (int j = 0; j < oldKeys.length; ++j) {
+            int k = oldKeys[j];
+            if (k == 0) continue;
+            int i = HashTables.slot(k, mask);
+            while (keys[i] != 0) i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public IntObjectMap<V> clone()
+    {
+        try {
+            IntObjectMap<V> out = cast(super.clone());
+            out.keys = keys.clone();
+            out.values = values.clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("{");
+        forEach((k, v) -> b.append(k).append("=").append(v).append(", "));
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("}");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = hasZeroKey ? Objects.hashCode(zeroValue) : 0;
+        for (int i = 0; i < keys.length; ++i)
+            if (keys[i] != 0)
+                hashCode += keys[i] ^ Objects.hashCode(values[i]);
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntObjectMap))
+            return false;
+
+        IntObjectMap<?> other = (IntObjectMap<?>) o;
+
+        if (size() != other.size())
+            return false;
+        if (hasZeroKey && (!other.hasZeroKey || !Objects.equals(zeroValue, other.zeroValue)))
+            return false;
+
+        for (int i = 0; i < keys.length; ++i) {
+            int k = keys[i];
+            if (k == 0) continue;
+            int j = other.find(k);
+            if (j < 0 || !Objects.equals(values[i], other.values[j]))
+                return false;
+        }
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
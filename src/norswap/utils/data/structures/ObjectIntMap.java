@@ -0,0 +1,309 @@
+package norswap.utils.data.structures;
+
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * A hash map from keys of type {@code K} to {@code int} values, that does not box values.
+ *
+ * <p>The map uses open addressing with linear probing: keys and values are stored in two parallel
+ * arrays whose size is a power of 2, which are resized when they become 3/4 full. Null is used to
+ * mark empty slots, and so null keys are not permitted. Removals shift the following entries back,
+ * so the map never accumulates tombstones.
+ *
+ * <p>Iteration is performed via {@link #forEach(ObjIntConsumer)}, which does not allocate.
+ *
+ * <p>The backing arrays are never shrunk in capacity when items are removed.
+ */
+public final class ObjectIntMap<K> implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private Object[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a map that can hold {@code expected} entries without being resized.
+     */
+    public ObjectIntMap (int expected) {
+        int capacity = HashTables.capacityFor(expected);
+        this.keys = new Object[capacity];
+        this.values = new int[capacity];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ObjectIntMap() {
+        this(8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of entries in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the map has no entries.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current capacity of the backing arrays.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the slot at which {@code key} is stored, or -1 if absent.
+     *
+     * @throws NullPointerException if {@code key} is null.
+     */
+    private int find (Object key)
+    {
+        int mask = keys.length - 1;
+        for (int i = HashTables.slot(key, mask); ; i = (i + 1) & mask) {
+            Object k = keys[i];
+            if (k == null) return -1;
+            if (k == key || k.equals(key)) return i;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the map contains an entry for {@code key}.
+     *
+     * @throws NullPointerException if {@code key} is null.
+     */
+    public boolean containsKey (Object key) {
+        return find(key) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value associated with {@code key}.
+     *
+     * @throws NoSuchElementException if the map does not contain the key.
+     * @throws NullPointerException if {@code key} is null.
+     */
+    public int get (Object key)
+    {
+        int i = find(key);
+        if (i < 0) throw new NoSuchElementException("key: " + key);
+        return values[i];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value associated with {@code key}, or {@code defaultValue} if the map does not
+     * contain the key.
+     *
+     * @throws NullPointerException if {@code key} is null.
+     */
+    public int getOrDefault (Object key, int defaultValue)
+    {
+        int i = find(key);
+        return i < 0 ? defaultValue : values[i];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates {@code value} with {@code key}, replacing any previous value.
+     *
+     * @throws NullPointerException if {@code key} is null.
+     */
+    public void put (K key, int value)
+    {
+        int mask = keys.length - 1;
+        int i = HashTables.slot(key, mask);
+        for (Object k = keys[i]; k != null; k = keys[i]) {
+            if (k == key || k.equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > HashTables.maxFill(keys.length))
+            rehash(keys.length * 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the entry for {@code key}, if present, and returns true iff there was such an entry.
+     *
+     * @throws NullPointerException if {@code key} is null.
+     */
+    public boolean remove (Object key)
+    {
+        int i = find(key);
+        if (i < 0) return false;
+        shiftBack(i);
+        --size;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code consumer} on each (key, value) pair in the map, in unspecified order. The map
+     * must not be modified during the iteration.
+     */
+    public void forEach (ObjIntConsumer<? super K> consumer)
+    {
+        for (int i = 0; i < keys.length; ++i)
+            if (keys[i] != null)
+                consumer.accept(cast(keys[i]), values[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Empties slot {@code pos}, moving back the entries that follow it in their probe sequence.
+     */
+    private void shiftBack (int pos)
+    {
+        int mask = keys.length - 1;
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            Object k;
+            while (true) {
+                k = keys[pos];
+                if (k == null) {
+                    keys[last] = null;
+                    return;
+                }
+                if (HashTables.canShift(last, HashTables.slot(k, mask), pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void rehash (int capacity)
+    {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int j = 0; j < oldKeys.length; ++j) {
+            Object k = oldKeys[j];
+            if (k == null) continue;
+            int i = HashTables.slot(k, mask);
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public ObjectIntMap<K> clone()
+    {
+        try {
+            ObjectIntMap<K> out = cast(super.clone());
+            out.keys = keys.clone();
+            out.values = values.clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("{");
+        forEach((k, v) -> b.append(k).append("=").append(v).append(", "));
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("}");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 0;
+        for (int i = 0; i < keys.length; ++i)
+            if (keys[i] != null)
+                hashCode += keys[i].hashCode() ^ values[i];
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof ObjectIntMap))
+            return false;
+
+        ObjectIntMap<?> other = (ObjectIntMap<?>) o;
+
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < keys.length; ++i) {
+            Object k = keys[i];
+            if (k == null) continue;
+            int j = other.find(k);
+            if (j < 0 || values[i] != other.values[j])
+                return false;
+        }
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
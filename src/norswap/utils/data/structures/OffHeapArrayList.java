@@ -0,0 +1,282 @@
+package norswap.utils.data.structures;
+
+import norswap.utils.exceptions.Exceptions;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Common implementation of {@link OffHeapArrayListInt} and {@link OffHeapArrayListLong}: manages
+ * the chunks of off-heap memory that hold the items, as well as the file they are mapped from, if
+ * any.
+ */
+abstract class OffHeapArrayList implements AutoCloseable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    /** Default number of items per chunk. */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /** Releases the memory of a direct buffer, or null if the JVM does not allow it. */
+    private static final MethodHandle FREE = freeHandle();
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** log2 of the size of an item in bytes. */
+    private final int itemShift;
+
+    /** log2 of the number of items per chunk. */
+    final int chunkShift;
+
+    /** Number of items per chunk, minus one. */
+    final int chunkMask;
+
+    /** File channel the chunks are mapped from, or null if the chunks are direct buffers. */
+    private final FileChannel channel;
+
+    /** Chunks holding the items. Only the first {@link #chunkCount} are allocated. */
+    ByteBuffer[] chunks = new ByteBuffer[4];
+
+    int chunkCount;
+
+    int size;
+
+    private boolean closed;
+
+    // ---------------------------------------------------------------------------------------------
+
+    OffHeapArrayList (int itemShift, int chunkSize)
+    {
+        checkChunkSize(itemShift, chunkSize);
+        this.itemShift = itemShift;
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        this.chunkMask = chunkSize - 1;
+        this.channel = null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    OffHeapArrayList (int itemShift, int chunkSize, Path file) throws IOException
+    {
+        checkChunkSize(itemShift, chunkSize);
+        this.itemShift = itemShift;
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+        this.chunkMask = chunkSize - 1;
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+
+        try {
+            long items = channel.size() >> itemShift;
+            if (items > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("file too large: " + file);
+            ensureCapacity((int) items);
+            size = (int) items;
+        }
+        catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void checkChunkSize (int itemShift, int chunkSize)
+    {
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1
+                || chunkSize > (1 << 30 >> itemShift))
+            throw new IllegalArgumentException(
+                "chunk size must be a power of 2 spanning at most 2^30 bytes: " + chunkSize);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of items in this list.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the list has no items.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of items the currently allocated chunks can hold.
+     */
+    public int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) chunkCount << chunkShift);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of items per chunk.
+     */
+    public int chunkSize() {
+        return chunkMask + 1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Allocates chunks until the list can hold at least {@code capacity} items. Existing chunks
+     * are never copied.
+     *
+     * @throws IllegalStateException if the list is closed.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        if (closed) throw new IllegalStateException("list is closed");
+        int needed = (int) (((long) capacity + chunkMask) >>> chunkShift);
+        if (needed <= chunkCount) return;
+        if (needed > chunks.length)
+            chunks = Arrays.copyOf(chunks, Math.max(needed, chunks.length * 2));
+        for (; chunkCount < needed; ++chunkCount)
+            chunks[chunkCount] = allocate(chunkCount);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ByteBuffer allocate (int index)
+    {
+        int bytes = (chunkMask + 1) << itemShift;
+        if (channel == null)
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        try {
+            return channel.map(MapMode.READ_WRITE, (long) index * bytes, bytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw Exceptions.runtime(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all items from the list. The chunks are kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack.
+     * @throws NoSuchElementException if the stack does not have that many items, in which case
+     * no items are removed.
+     */
+    public void pop (int n)
+    {
+        if (size < n) throw new NoSuchElementException();
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Releases the off-heap memory held by the list, which becomes empty and cannot grow anymore.
+     * If the list is mapped from a file, the file is truncated to the size of the list and closed.
+     * Calling this method more than once has no effect.
+     *
+     * <p>The memory is released immediately if the JVM allows it, otherwise it is left to the
+     * garbage collector. This method must not be called while other threads use the list.
+     */
+    @Override public void close()
+    {
+        if (closed) return;
+        closed = true;
+
+        for (int i = 0; i < chunkCount; ++i)
+            free(chunks[i]);
+
+        long bytes = (long) size << itemShift;
+        chunks = new ByteBuffer[0];
+        chunkCount = 0;
+        size = 0;
+
+        if (channel != null)
+            try {
+                channel.truncate(bytes);
+                channel.close();
+            } catch (IOException e) {
+                throw Exceptions.runtime(e);
+            }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void free (ByteBuffer buffer)
+    {
+        if (FREE == null) return;
+        try {
+            FREE.invokeExact(buffer);
+        } catch (Throwable t) {
+            // leave it to the garbage collector
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@code (ByteBuffer)void} handle that frees a direct buffer, using
+     * {@code Unsafe.invokeCleaner} (Java 9+) or the buffer's cleaner (Java 8), or null if neither
+     * is available.
+     */
+    private static MethodHandle freeHandle()
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return lookup
+                .findVirtual(unsafeClass, "invokeCleaner", methodType(void.class, ByteBuffer.class))
+                .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not Java 9+
+        }
+        try {
+            Class<?> directBuffer = Class.forName("sun.nio.ch.DirectBuffer");
+            Class<?> cleanerClass = Class.forName("sun.misc.Cleaner");
+            MethodHandle cleaner =
+                lookup.findVirtual(directBuffer, "cleaner", methodType(cleanerClass));
+            MethodHandle clean = lookup.findVirtual(cleanerClass, "clean", methodType(void.class));
+            return MethodHandles.filterReturnValue(cleaner, clean)
+                .asType(methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
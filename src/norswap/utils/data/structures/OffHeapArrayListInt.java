@@ -0,0 +1,198 @@
+// Generated from templates/OffHeapArrayListPrimitive.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.data.structures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+/**
+ * A resizable array of {@code int} values stored off-heap, either in direct byte buffers or in a
+ * memory-mapped file, so that very large lists do not burden the garbage collector. It has the
+ * same basic list and stack interface as {@link ArrayListInt}.
+ *
+ * <p>The items are stored in fixed-size chunks. Growing the list allocates new chunks but never
+ * copies existing items.
+ *
+ * <p>The list holds native resources, and so should be {@link #close() closed} after use. A list
+ * mapped from a file persists its items in that file (in little-endian order): reopening the file
+ * restores the list, provided it was closed.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class OffHeapArrayListInt extends OffHeapArrayList
+{
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a list backed by direct byte buffers, holding {@code chunkSize} items each.
+     *
+     * @throws IllegalArgumentException if {@code chunkSize} is not a power of 2 or is larger than
+     * 2^28.
+     */
+    public OffHeapArrayListInt (int chunkSize) {
+        super(2, chunkSize);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public OffHeapArrayListInt() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a list mapped from {@code file}, holding {@code chunkSize} items per chunk. If the
+     * file exists, the list initially holds its content, otherwise it is created.
+     *
+     * @throws IllegalArgumentException if {@code chunkSize} is not a power of 2 or is larger than
+     * 2^28.
+     */
+    public OffHeapArrayListInt (Path file, int chunkSize) throws IOException {
+        super(2, chunkSize, file);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public OffHeapArrayListInt (Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the element at the specified position in this list with the specified element.
+     */
+    public void set (int i, int v)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        chunks[i >>> chunkShift].putInt((i & chunkMask) << 2, v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the element at the specified position in this list.
+     */
+    public int get (int i)
+    {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+        return chunks[i >>> chunkShift].getInt((i & chunkMask) << 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the specified element to the end of this list.
+     *
+     * @throws IllegalStateException if the list is closed.
+     */
+    public void add (int v)
+    {
+        if (size >>> chunkShift == chunkCount)
+            ensureCapacity(size + 1);
+        chunks[size >>> chunkShift].putInt((size & chunkMask) << 2, v);
+        ++size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the elements of {@code items} in {@code [from, to[} to the end of this list.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     * @throws IllegalStateException if the list is closed.
+     */
+    public void addAll (int[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        ensureCapacity(size + (to - from));
+        while (from < to) {
+            int offset = size & chunkMask;
+            int n = Math.min(to - from, chunkMask + 1 - offset);
+            ByteBuffer chunk = chunks[size >>> chunkShift].duplicate();
+            chunk.order(chunks[0].order()).position(offset << 2);
+            chunk.asIntBuffer().put(items, from, n);
+            from += n;
+            size += n;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public void push (int item) {
+        add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public void push (int... items) {
+        addAll(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public int pop()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        --size;
+        return chunks[size >>> chunkShift].getInt((size & chunkMask) << 2);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack.
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public int peek()
+    {
+        if (size == 0) throw new NoSuchElementException();
+        return get(size - 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} items below the top of the stack (0 = top).
+     * @throws NoSuchElementException if the stack does not have that many items.
+     */
+    public int back (int n)
+    {
+        if (size <= n) throw new NoSuchElementException();
+        return get(size - 1 - n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new (on-heap) array containing the elements of this list.
+     */
+    public int[] toArray()
+    {
+        int[] out = new int[size];
+        for (int done = 0; done < size; ) {
+            int n = Math.min(size - done, chunkMask + 1);
+            ByteBuffer chunk = chunks[done >>> chunkShift].duplicate();
+            chunk.order(chunks[0].order()).position(0);
+            chunk.asIntBuffer().get(out, done, n);
+            done += n;
+        }
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
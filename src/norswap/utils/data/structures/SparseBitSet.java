@@ -0,0 +1,339 @@
+package norswap.utils.data.structures;
+
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of non-negative {@code int} values, represented as a bitset whose storage is allocated
+ * lazily, one page of {@value #PAGE_BITS} bits at a time.
+ *
+ * <p>Unlike {@link java.util.BitSet}, the memory usage is proportional to the spread of the values
+ * actually present rather than to the largest value, which makes this suitable for sparse ids
+ * (e.g. visited nodes, interned symbols). Growing the set only copies the (small) array of page
+ * references, never the pages themselves.
+ *
+ * <p>Iteration is performed via {@link #forEach(IntConsumer)}, in increasing order, and does not
+ * allocate.
+ *
+ * <p>Pages are never deallocated when items are removed, except by {@link #clear()}.
+ */
+public final class SparseBitSet implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    /** log2 of {@link #PAGE_BITS}. */
+    private static final int PAGE_SHIFT = 12;
+
+    /** Number of bits in a page. */
+    public static final int PAGE_BITS = 1 << PAGE_SHIFT;
+
+    /** Number of longs in a page. */
+    private static final int PAGE_WORDS = PAGE_BITS / 64;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Pages, each covering {@link #PAGE_BITS} values. Null entries are empty pages. */
+    private long[][] pages;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a set that can hold values up to {@code maxValue} without growing its page array.
+     */
+    public SparseBitSet (int maxValue) {
+        this.pages = new long[(maxValue >>> PAGE_SHIFT) + 1][];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public SparseBitSet() {
+        this(0);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of values in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the set has no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void checkIndex (int item) {
+        if (item < 0) throw new IndexOutOfBoundsException("negative value: " + item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the set contains {@code item}.
+     *
+     * @throws IndexOutOfBoundsException if {@code item} is negative.
+     */
+    public boolean contains (int item)
+    {
+        checkIndex(item);
+        int p = item >>> PAGE_SHIFT;
+        if (p >= pages.length) return false;
+        long[] page = pages[p];
+        return page != null && (page[(item & (PAGE_BITS - 1)) >>> 6] & (1L << item)) != 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds {@code item} to the set, and returns true iff it wasn't already present.
+     *
+     * @throws IndexOutOfBoundsException if {@code item} is negative.
+     */
+    public boolean add (int item)
+    {
+        checkIndex(item);
+        int p = item >>> PAGE_SHIFT;
+        if (p >= pages.length)
+            pages = Arrays.copyOf(pages, Math.max(p + 1, pages.length * 2));
+        long[] page = pages[p];
+        if (page == null)
+            page = pages[p] = new long[PAGE_WORDS];
+
+        int w = (item & (PAGE_BITS - 1)) >>> 6;
+        long word = page[w];
+        long bit = 1L << item;
+        if ((word & bit) != 0) return false;
+        page[w] = word | bit;
+        ++size;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all the values to the set.
+     *
+     * @throws IndexOutOfBoundsException if a value is negative, in which case the preceding values
+     * will have been added.
+     */
+    public void addAll (int... values) {
+        for (int item: values)
+            add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all the items in {@code list} to the set.
+     *
+     * @throws IndexOutOfBoundsException if an item is negative, in which case the preceding items
+     * will have been added.
+     */
+    public void addAll (ArrayListInt list)
+    {
+        int[] array = list.array();
+        int size = list.size();
+        for (int i = 0; i < size; ++i)
+            add(array[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes {@code item} from the set, and returns true iff it was present.
+     *
+     * @throws IndexOutOfBoundsException if {@code item} is negative.
+     */
+    public boolean remove (int item)
+    {
+        checkIndex(item);
+        int p = item >>> PAGE_SHIFT;
+        if (p >= pages.length) return false;
+        long[] page = pages[p];
+        if (page == null) return false;
+
+        int w = (item & (PAGE_BITS - 1)) >>> 6;
+        long word = page[w];
+        long bit = 1L << item;
+        if ((word & bit) == 0) return false;
+        page[w] = word & ~bit;
+        --size;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all values from the set, releasing all pages.
+     */
+    public void clear()
+    {
+        Arrays.fill(pages, null);
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the smallest value in the set that is greater or equal to {@code from}, or -1 if
+     * there is no such value.
+     *
+     * @throws IndexOutOfBoundsException if {@code from} is negative.
+     */
+    public int next (int from)
+    {
+        checkIndex(from);
+        int p = from >>> PAGE_SHIFT;
+        int w = (from & (PAGE_BITS - 1)) >>> 6;
+        long mask = -1L << from; // shift distance is taken modulo 64
+
+        for (; p < pages.length; ++p, w = 0, mask = -1L) {
+            long[] page = pages[p];
+            if (page == null) continue;
+            for (; w < PAGE_WORDS; ++w, mask = -1L) {
+                long word = page[w] & mask;
+                if (word != 0)
+                    return (p << PAGE_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code consumer} on each value in the set, in increasing order. The set must not be
+     * modified during the iteration.
+     */
+    public void forEach (IntConsumer consumer)
+    {
+        for (int p = 0; p < pages.length; ++p) {
+            long[] page = pages[p];
+            if (page == null) continue;
+            for (int w = 0; w < PAGE_WORDS; ++w) {
+                long word = page[w];
+                while (word != 0) {
+                    consumer.accept((p << PAGE_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the values in the set, in increasing order.
+     */
+    public int[] toArray()
+    {
+        int[] out = new int[size];
+        int j = 0;
+        for (int p = 0; p < pages.length; ++p) {
+            long[] page = pages[p];
+            if (page == null) continue;
+            for (int w = 0; w < PAGE_WORDS; ++w)
+                for (long word = page[w]; word != 0; word &= word - 1)
+                    out[j++] = (p << PAGE_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new list containing the values in the set, in increasing order.
+     */
+    public ArrayListInt toList()
+    {
+        ArrayListInt out = new ArrayListInt(size);
+        forEach(out::add);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public SparseBitSet clone()
+    {
+        try {
+            SparseBitSet out = (SparseBitSet) super.clone();
+            out.pages = pages.clone();
+            for (int p = 0; p < pages.length; ++p)
+                if (pages[p] != null)
+                    out.pages[p] = pages[p].clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("{");
+        forEach(item -> b.append(item).append(", "));
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("}");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 0;
+        for (int p = 0; p < pages.length; ++p) {
+            long[] page = pages[p];
+            if (page == null) continue;
+            // skip empty words, as equal sets may differ in which pages are allocated
+            for (int w = 0; w < PAGE_WORDS; ++w)
+                if (page[w] != 0)
+                    hashCode += 31 * (p * PAGE_WORDS + w) + Long.hashCode(page[w]);
+        }
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof SparseBitSet))
+            return false;
+
+        SparseBitSet other = (SparseBitSet) o;
+
+        if (size != other.size)
+            return false;
+
+        // Pages may be missing on one side and empty on the other.
+        int count = Math.max(pages.length, other.pages.length);
+        for (int p = 0; p < count; ++p) {
+            long[] a = p < pages.length ? pages[p] : null;
+            long[] b = p < other.pages.length ? other.pages[p] : null;
+            if (a == null && b == null) continue;
+            for (int w = 0; w < PAGE_WORDS; ++w)
+                if ((a == null ? 0 : a[w]) != (b == null ? 0 : b[w]))
+                    return false;
+        }
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
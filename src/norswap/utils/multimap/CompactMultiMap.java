@@ -0,0 +1,413 @@
+package norswap.utils.multimap;
+
+import norswap.utils.data.wrappers.Pair;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * A memory-efficient multimap implementation, for multimaps where most keys are bound to very few
+ * values.
+ *
+ * <p>Unlike {@link MultiHashMap}, which allocates an array list per key, this implementation stores
+ * a key's value directly in the underlying {@link HashMap} entry as long as the key is bound to a
+ * single value. Only when a second value is added is an array allocated, and it is grown
+ * conservatively (2, 4, 7, 11, ...) rather than doubled.
+ *
+ * <p>All collections returned by this class (including those obtained through {@link #entrySet()}
+ * and {@link #values()}) are unmodifiable lists. Modifications must go through the multimap. Except
+ * for those returned by {@link #remove} and {@link #put}, these lists are live views bound to their
+ * key: like with {@link MultiHashMap}, they reflect later changes to the values of the key, and
+ * are empty while the key is not bound. Each access to such a view looks up the key.
+ *
+ * <p>By default, duplicate values are permitted. If constructed with {@code set = true}, duplicate
+ * values are eliminated: small collections are deduplicated by linear scan, larger ones also keep a
+ * hash set index. In both cases, values are kept in insertion order.
+ *
+ * <p>Values added through {@link #put} are copied.
+ */
+public final class CompactMultiMap<K, V>
+        extends AbstractMap<K, Collection<V>>
+        implements MultiMap<K, V>
+{
+    // ---------------------------------------------------------------------------------------------
+
+    /** Stands for a null value stored inline. */
+    private static final Object NULL = new Object();
+
+    /** Size above which set-mode collections maintain a hash set index. */
+    private static final int INDEX_THRESHOLD = 8;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Maps keys to either a single (masked) value, or to a {@link Values} instance. */
+    private final HashMap<K, Object> map = new HashMap<>();
+
+    private final boolean set;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap, which eliminates duplicate values iff {@code set} is true.
+     */
+    public CompactMultiMap (boolean set) {
+        this.set = set;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap that permits duplicate values.
+     */
+    public CompactMultiMap() {
+        this(false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Whether duplicate values are eliminated.
+     */
+    public boolean isSet() {
+        return set;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Object mask (Object value) {
+        return value == null ? NULL : value;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static <V> V unmask (Object value) {
+        return value == NULL ? null : cast(value);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Returns a read-only collection for the given stored value. */
+    private static <V> Collection<V> view (Object stored)
+    {
+        if (stored == null)
+            return Collections.emptyList();
+        if (stored instanceof Values)
+            return cast(stored);
+        return Collections.singletonList(unmask(stored));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Adds {@code value} to the stored value {@code stored}, and returns the new stored value. */
+    private Object append (Object stored, V value)
+    {
+        if (stored == null)
+            return mask(value);
+        if (stored instanceof Values) {
+            CompactMultiMap.<V>values(stored).append(value);
+            return stored;
+        }
+        V first = unmask(stored);
+        if (set && Objects.equals(first, value))
+            return stored;
+        Values<V> values = new Values<>(set);
+        values.append(first);
+        values.append(value);
+        return values;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static <V> Values<V> values (Object stored) {
+        return cast(stored);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int size() {
+        return map.size();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean containsKey (Object key) {
+        return map.containsKey(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> get (Object key) {
+        return new KeyView(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> remove (Object key) {
+        return view(map.remove(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> put (K key, Collection<V> value)
+    {
+        Object stored = null;
+        for (V v: value) stored = append(stored, v);
+        Object old = map.put(key, stored == null ? new Values<V>(set) : stored);
+        return old == null ? null : view(old);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void clear() {
+        map.clear();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Set<Entry<K, Collection<V>>> entrySet() {
+        return new EntrySet();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> add (K key, V value)
+    {
+        map.put(key, append(map.get(key), value));
+        return new KeyView(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> delete (K key, V value) {
+        return delete(key, value, false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> deletePollute (K key, V value) {
+        return delete(key, value, true);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Collection<V> delete (K key, V value, boolean pollute)
+    {
+        Object stored = map.get(key);
+        if (stored == null)
+            return new KeyView(key);
+
+        if (stored instanceof Values) {
+            Values<V> values = values(stored);
+            values.erase(value);
+            if (values.size() == 1) {
+                stored = mask(values.get(0));
+                map.put(key, stored);
+            } else if (values.size() == 0 && !pollute) {
+                map.remove(key);
+            }
+            return new KeyView(key);
+        }
+
+        if (!Objects.equals(unmask(stored), value))
+            return new KeyView(key);
+        if (pollute)
+            map.put(key, new Values<V>(set));
+        else
+            map.remove(key);
+        return new KeyView(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, V[] values)
+    {
+        Object stored = map.get(key);
+        for (V v: values) stored = append(stored, v);
+        if (stored == null) stored = new Values<V>(set);
+        map.put(key, stored);
+        return new KeyView(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, Iterable<V> values)
+    {
+        Object stored = map.get(key);
+        for (V v: values) stored = append(stored, v);
+        if (stored == null) stored = new Values<V>(set);
+        map.put(key, stored);
+        return new KeyView(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Stream<Pair<K, V>> pairs()
+    {
+        return map.entrySet().stream().flatMap(e ->
+            e.getValue() instanceof Values
+                ? CompactMultiMap.<V>values(e.getValue()).stream().map(v -> new Pair<>(e.getKey(), v))
+                : Stream.of(new Pair<>(e.getKey(), unmask(e.getValue()))));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final class EntrySet extends AbstractSet<Entry<K, Collection<V>>>
+    {
+        @Override public int size() {
+            return map.size();
+        }
+
+        @Override public void clear() {
+            map.clear();
+        }
+
+        @Override public Iterator<Entry<K, Collection<V>>> iterator()
+        {
+            Iterator<Entry<K, Object>> it = map.entrySet().iterator();
+            return new Iterator<Entry<K, Collection<V>>>()
+            {
+                @Override public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override public Entry<K, Collection<V>> next()
+                {
+                    Entry<K, Object> e = it.next();
+                    return new SimpleImmutableEntry<>(e.getKey(), new KeyView(e.getKey()));
+                }
+
+                @Override public void remove() {
+                    it.remove();
+                }
+            };
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Read-only list of the values bound to a key, which looks up the key on each access.
+     */
+    private final class KeyView extends AbstractList<V> implements RandomAccess
+    {
+        private final Object key;
+
+        KeyView (Object key) {
+            this.key = key;
+        }
+
+        @Override public V get (int i)
+        {
+            Object stored = map.get(key);
+            if (stored instanceof Values)
+                return CompactMultiMap.<V>values(stored).get(i);
+            if (stored == null || i != 0)
+                throw new IndexOutOfBoundsException();
+            return unmask(stored);
+        }
+
+        @Override public int size()
+        {
+            Object stored = map.get(key);
+            return stored == null ? 0 : stored instanceof Values ? values(stored).size() : 1;
+        }
+
+        @Override public boolean contains (Object o) {
+            return view(map.get(key)).contains(o);
+        }
+
+        @Override public Iterator<V> iterator() {
+            return CompactMultiMap.<V>view(map.get(key)).iterator();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Array-backed list of the values bound to a key, once there are more than one. The list
+     * interface is read-only: the multimap uses {@link #append} and {@link #erase} instead.
+     */
+    private static final class Values<V> extends AbstractList<V> implements RandomAccess
+    {
+        private final boolean set;
+        private Object[] items = new Object[2];
+        private int size;
+
+        /** In set mode, index of the items, once there are more than {@code INDEX_THRESHOLD}. */
+        private HashSet<V> index;
+
+        Values (boolean set) {
+            this.set = set;
+        }
+
+        void append (V value)
+        {
+            if (set) {
+                if (index != null) {
+                    if (!index.add(value)) return;
+                } else if (indexOf(value) >= 0) {
+                    return;
+                } else if (size == INDEX_THRESHOLD) {
+                    index = new HashSet<>();
+                    for (int i = 0; i < size; ++i) index.add(cast(items[i]));
+                    index.add(value);
+                }
+            }
+            if (size == items.length)
+                items = Arrays.copyOf(items, size + (size >> 1) + 1);
+            items[size++] = value;
+            ++modCount;
+        }
+
+        void erase (Object value)
+        {
+            if (index != null && !index.remove(value)) return;
+            int i = indexOf(value);
+            if (i < 0) return;
+            System.arraycopy(items, i + 1, items, i, size - i - 1);
+            items[--size] = null;
+            ++modCount;
+        }
+
+        @Override public V get (int i)
+        {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+            return cast(items[i]);
+        }
+
+        @Override public int size() {
+            return size;
+        }
+
+        @Override public int indexOf (Object o)
+        {
+            for (int i = 0; i < size; ++i)
+                if (Objects.equals(o, items[i])) return i;
+            return -1;
+        }
+
+        @Override public boolean contains (Object o) {
+            return index != null ? index.contains(o) : indexOf(o) >= 0;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,433 @@
+package norswap.utils.multimap;
+
+import norswap.utils.data.wrappers.Pair;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe multimap implementation based on {@link ConcurrentHashMap}.
+ *
+ * <p>All the operations that modify the values associated with a key ({@link #add}, {@link
+ * #addAll}, {@link #delete}, {@link #deletePollute}) are atomic: they run while holding the lock
+ * of the {@link ConcurrentHashMap} bin for the key, so operations on different keys rarely contend.
+ * In particular, a value added concurrently with the deletion of the last value for the same key is
+ * never lost.
+ *
+ * <p>Reads never block. The value collections are lock-free concurrent collections, and the
+ * collections returned by this class (including those obtained through {@link #entrySet()} and
+ * {@link #values()}) are unmodifiable views of them, whose iterators are weakly consistent. The
+ * same goes for {@link #pairs()}, which can be consumed in parallel.
+ *
+ * <p>By default, duplicate values are permitted (the collections are {@link
+ * ConcurrentLinkedQueue}s, viewed as {@link List}s). If constructed with {@code set = true},
+ * duplicate values are eliminated (the collections are concurrent sets, as per {@link
+ * ConcurrentHashMap#newKeySet()}, viewed as {@link Set}s). Either way, the views compare by
+ * content, so this multimap is equal to any other multimap with the same keys and values.
+ * Positional access on list views takes linear time.
+ *
+ * <p>Collections inserted through the {@link Map} interface (e.g. {@link #put}) must be
+ * thread-safe. The functions passed to {@link #compute}, {@link #computeIfPresent} and {@link
+ * #merge} receive the underlying collections, not views.
+ */
+public final class ConcurrentMultiMap<K, V>
+        extends AbstractMap<K, Collection<V>>
+        implements MultiMap<K, V>, Serializable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 2L;
+
+    private final ConcurrentHashMap<K, Collection<V>> map = new ConcurrentHashMap<>();
+
+    private final boolean set;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap, which eliminates duplicate values iff {@code set} is true.
+     */
+    public ConcurrentMultiMap (boolean set) {
+        this.set = set;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap that permits duplicate values.
+     */
+    public ConcurrentMultiMap() {
+        this(false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Whether duplicate values are eliminated.
+     */
+    public boolean isSet() {
+        return set;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Collection<V> newCollection() {
+        return set ? ConcurrentHashMap.newKeySet() : new ConcurrentLinkedQueue<>();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private Collection<V> emptyCollection() {
+        return set ? Collections.emptySet() : Collections.emptyList();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Returns a read-only view of {@code collection}, or null if it is null. */
+    private Collection<V> viewOrNull (Collection<V> collection)
+    {
+        if (collection == null)
+            return null;
+        return collection instanceof Set
+            ? Collections.unmodifiableSet((Set<V>) collection)
+            : new ListView<>(collection);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Returns a read-only view of {@code collection}, or an empty collection if it is null. */
+    private Collection<V> view (Collection<V> collection) {
+        return collection == null ? emptyCollection() : viewOrNull(collection);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int size() {
+        return map.size();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean containsKey (Object key) {
+        return map.containsKey(key);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> get (Object key) {
+        return view(map.get(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> getOrDefault (Object key, Collection<V> defaultValue)
+    {
+        Collection<V> out = map.get(key);
+        return out == null ? defaultValue : viewOrNull(out);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> remove (Object key) {
+        return view(map.remove(key));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean remove (Object key, Object value)
+    {
+        Collection<V> out = map.get(key);
+        return out != null && viewOrNull(out).equals(value) && map.remove(key, out);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> put (K key, Collection<V> value) {
+        return viewOrNull(map.put(key, value));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> putIfAbsent (K key, Collection<V> value) {
+        return viewOrNull(map.putIfAbsent(key, value));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> replace (K key, Collection<V> value) {
+        return viewOrNull(map.replace(key, value));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean replace (K key, Collection<V> oldValue, Collection<V> newValue)
+    {
+        Collection<V> out = map.get(key);
+        return out != null && viewOrNull(out).equals(oldValue) && map.replace(key, out, newValue);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> computeIfAbsent
+            (K key, Function<? super K, ? extends Collection<V>> f)
+    {
+        return viewOrNull(map.computeIfAbsent(key, f));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> computeIfPresent
+            (K key, BiFunction<? super K, ? super Collection<V>, ? extends Collection<V>> f)
+    {
+        return viewOrNull(map.computeIfPresent(key, f));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> compute
+            (K key, BiFunction<? super K, ? super Collection<V>, ? extends Collection<V>> f)
+    {
+        return viewOrNull(map.compute(key, f));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> merge (K key, Collection<V> value,
+            BiFunction<? super Collection<V>, ? super Collection<V>, ? extends Collection<V>> f)
+    {
+        return viewOrNull(map.merge(key, value, f));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void forEach (BiConsumer<? super K, ? super Collection<V>> f) {
+        map.forEach((k, v) -> f.accept(k, viewOrNull(v)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void clear() {
+        map.clear();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Set<K> keySet() {
+        return map.keySet();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Set<Entry<K, Collection<V>>> entrySet() {
+        return new EntrySet();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> add (K key, V value)
+    {
+        return view(map.compute(key, (k, out) -> {
+            if (out == null) out = newCollection();
+            out.add(value);
+            return out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> delete (K key, V value)
+    {
+        return view(map.computeIfPresent(key, (k, out) -> {
+            out.remove(value);
+            return out.isEmpty() ? null : out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> deletePollute (K key, V value)
+    {
+        return view(map.computeIfPresent(key, (k, out) -> {
+            out.remove(value);
+            return out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, V[] values)
+    {
+        return view(map.compute(key, (k, out) -> {
+            if (out == null) out = newCollection();
+            Collections.addAll(out, values);
+            return out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, Iterable<V> values)
+    {
+        return view(map.compute(key, (k, out) -> {
+            if (out == null) out = newCollection();
+            for (V v: values) out.add(v);
+            return out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, Collection<V> values)
+    {
+        return view(map.compute(key, (k, out) -> {
+            if (out == null) out = newCollection();
+            out.addAll(values);
+            return out;
+        }));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Stream<Pair<K, V>> pairs()
+    {
+        return map.entrySet().stream().flatMap(e ->
+                e.getValue().stream().map(v -> new Pair<>(e.getKey(), v)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final class EntrySet extends AbstractSet<Entry<K, Collection<V>>>
+    {
+        @Override public int size() {
+            return map.size();
+        }
+
+        @Override public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override public void clear() {
+            map.clear();
+        }
+
+        @Override public boolean contains (Object o)
+        {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Collection<V> out = map.get(e.getKey());
+            return out != null && viewOrNull(out).equals(e.getValue());
+        }
+
+        @Override public boolean remove (Object o)
+        {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return ConcurrentMultiMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override public Iterator<Entry<K, Collection<V>>> iterator()
+        {
+            Iterator<Entry<K, Collection<V>>> it = map.entrySet().iterator();
+            return new Iterator<Entry<K, Collection<V>>>()
+            {
+                @Override public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override public Entry<K, Collection<V>> next()
+                {
+                    Entry<K, Collection<V>> e = it.next();
+                    return new SimpleImmutableEntry<>(e.getKey(), viewOrNull(e.getValue()));
+                }
+
+                @Override public void remove() {
+                    it.remove();
+                }
+            };
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Read-only list view of a value queue. Iteration is weakly consistent, and {@link #get} walks
+     * the queue from its head. Equality and hash code follow the {@link List} contract.
+     */
+    private static final class ListView<V> extends AbstractList<V>
+    {
+        private final Collection<V> values;
+
+        ListView (Collection<V> values) {
+            this.values = values;
+        }
+
+        @Override public V get (int i)
+        {
+            if (i >= 0)
+                for (V v: values)
+                    if (i-- == 0) return v;
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override public int size() {
+            return values.size();
+        }
+
+        @Override public boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        @Override public boolean contains (Object o) {
+            return values.contains(o);
+        }
+
+        @Override public Iterator<V> iterator()
+        {
+            Iterator<V> it = values.iterator();
+            return new Iterator<V>()
+            {
+                @Override public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override public V next() {
+                    return it.next();
+                }
+            };
+        }
+
+        // AbstractList.equals goes through listIterator(), which would call get() for each item.
+        @Override public boolean equals (Object o)
+        {
+            if (o == this) return true;
+            if (!(o instanceof List)) return false;
+            Iterator<V> it1 = iterator();
+            Iterator<?> it2 = ((List<?>) o).iterator();
+            while (it1.hasNext() && it2.hasNext())
+                if (!Objects.equals(it1.next(), it2.next())) return false;
+            return !(it1.hasNext() || it2.hasNext());
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,385 @@
+package norswap.utils.multimap;
+
+import norswap.utils.data.wrappers.Pair;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static norswap.utils.Util.cast;
+
+/**
+ * An immutable multimap with packed storage, obtained through {@link MultiMap#freeze()}.
+ *
+ * <p>Keys are stored in an array, and the values of all keys are stored contiguously in a single
+ * flat array: the values of the key at index {@code i} are found between {@code offsets[i]} and
+ * {@code offsets[i + 1]}. Keys are looked up through an open-addressing hash table of key indices.
+ * There is no per-key or per-value object.
+ *
+ * <p>Since the multimap is immutable, it can be read concurrently from any number of threads
+ * without synchronization. All mutating methods throw {@link UnsupportedOperationException}.
+ *
+ * <p>{@link #forEachPair(BiConsumer)} and the index-based accessors ({@link #indexOf}, {@link
+ * #keyAt}, {@link #valueCount}, {@link #valueAt}) iterate without allocating. {@link #pairs()}
+ * still has to allocate a {@link Pair} per value, but avoids the overhead of flat-mapping.
+ *
+ * <p>Collections returned by this class are unmodifiable lists, whose order is the iteration order
+ * of the original multimap's collections. If that multimap eliminated duplicate values, so will
+ * these lists (but they are not {@link Set}s).
+ */
+public final class FrozenMultiMap<K, V>
+        extends AbstractMap<K, Collection<V>>
+        implements MultiMap<K, V>
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private final Object[] keys;
+
+    /** {@code keys.length + 1} offsets into {@link #values}. */
+    private final int[] offsets;
+
+    private final Object[] values;
+
+    /** Open-addressing hash table, holding key indices plus one (0 = free slot). */
+    private final int[] table;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a frozen copy of {@code map}.
+     */
+    public FrozenMultiMap (Map<K, ? extends Collection<V>> map)
+    {
+        int keyCount = map.size();
+        int valueCount = 0;
+        for (Collection<V> col: map.values()) valueCount += col.size();
+
+        keys = new Object[keyCount];
+        offsets = new int[keyCount + 1];
+        values = new Object[valueCount];
+
+        int capacity = Integer.highestOneBit(Math.max(keyCount, 1) * 2 - 1) << 1;
+        table = new int[capacity];
+
+        int i = 0, j = 0;
+        for (Entry<K, ? extends Collection<V>> e: map.entrySet()) {
+            keys[i] = e.getKey();
+            for (V v: e.getValue()) values[j++] = v;
+            offsets[++i] = j;
+        }
+
+        for (int k = 0; k < keyCount; ++k) {
+            int slot = hash(keys[k]) & (capacity - 1);
+            while (table[slot] != 0) slot = (slot + 1) & (capacity - 1);
+            table[slot] = k + 1;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int hash (Object key)
+    {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the index of {@code key}, usable with the other index-based accessors, or -1 if the
+     * key is not in the multimap.
+     */
+    public int indexOf (Object key)
+    {
+        int mask = table.length - 1;
+        for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (Objects.equals(keys[i], key)) return i;
+        }
+        return -1;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the key at index {@code i} (between 0 and {@link #size()} excluded).
+     */
+    public K keyAt (int i) {
+        return cast(keys[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of values bound to the key at index {@code i}.
+     */
+    public int valueCount (int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the {@code j}-th value bound to the key at index {@code i}.
+     */
+    public V valueAt (int i, int j)
+    {
+        if (j < 0 || j >= valueCount(i)) throw new IndexOutOfBoundsException();
+        return cast(values[offsets[i] + j]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the total number of values in the multimap.
+     */
+    public int totalSize() {
+        return values.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each value bound to {@code key}.
+     */
+    public void forEachValue (Object key, Consumer<? super V> f)
+    {
+        int i = indexOf(key);
+        if (i < 0) return;
+        for (int j = offsets[i]; j < offsets[i + 1]; ++j)
+            f.accept(cast(values[j]));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public void forEachPair (BiConsumer<? super K, ? super V> f)
+    {
+        for (int i = 0; i < keys.length; ++i) {
+            K key = cast(keys[i]);
+            for (int j = offsets[i]; j < offsets[i + 1]; ++j)
+                f.accept(key, cast(values[j]));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns this multimap.
+     */
+    @Override public FrozenMultiMap<K, V> freeze() {
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int size() {
+        return keys.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean containsKey (Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> get (Object key)
+    {
+        int i = indexOf(key);
+        return i < 0 ? Collections.emptyList() : new Slice(i);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> allValues() {
+        return Collections.unmodifiableList(cast(Arrays.asList(values)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Set<Entry<K, Collection<V>>> entrySet() {
+        return new EntrySet();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Stream<Pair<K, V>> pairs() {
+        return StreamSupport.stream(new PairSpliterator(0, values.length), false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> remove (Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> put (K key, Collection<V> value) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> add (K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> delete (K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> deletePollute (K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, V[] values) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public Collection<V> addAll (K key, Iterable<V> values) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Read-only view of the values of a key. */
+    private final class Slice extends AbstractList<V> implements RandomAccess
+    {
+        private final int start, end;
+
+        Slice (int i) {
+            this.start = offsets[i];
+            this.end = offsets[i + 1];
+        }
+
+        @Override public V get (int j)
+        {
+            if (j < 0 || j >= end - start) throw new IndexOutOfBoundsException();
+            return cast(values[start + j]);
+        }
+
+        @Override public int size() {
+            return end - start;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final class EntrySet extends AbstractSet<Entry<K, Collection<V>>>
+    {
+        @Override public int size() {
+            return keys.length;
+        }
+
+        @Override public Iterator<Entry<K, Collection<V>>> iterator()
+        {
+            return new Iterator<Entry<K, Collection<V>>>()
+            {
+                private int i = 0;
+
+                @Override public boolean hasNext() {
+                    return i < keys.length;
+                }
+
+                @Override public Entry<K, Collection<V>> next()
+                {
+                    if (i >= keys.length) throw new NoSuchElementException();
+                    Entry<K, Collection<V>> out =
+                        new SimpleImmutableEntry<>(keyAt(i), new Slice(i));
+                    ++i;
+                    return out;
+                }
+            };
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Spliterator over the (key, value) pairs whose value lies in {@code [j, end[} in the flat
+     * value array, which splits in constant time and finds keys by binary search on the offsets.
+     */
+    private final class PairSpliterator implements Spliterator<Pair<K, V>>
+    {
+        private int j, end;
+
+        /** Index of the key of the value at index {@code j}. */
+        private int i;
+
+        PairSpliterator (int j, int end)
+        {
+            this.j = j;
+            this.end = end;
+            this.i = keyIndexOf(j);
+        }
+
+        /** Returns the index of the key whose values include index {@code j}. */
+        private int keyIndexOf (int j)
+        {
+            // the last key with offset <= j (skips keys without values)
+            int i = Arrays.binarySearch(offsets, j);
+            if (i < 0) return -i - 2;
+            while (i < keys.length - 1 && offsets[i + 1] == j) ++i;
+            return i;
+        }
+
+        @Override public boolean tryAdvance (Consumer<? super Pair<K, V>> action)
+        {
+            if (j >= end) return false;
+            while (offsets[i + 1] <= j) ++i;
+            action.accept(new Pair<>(keyAt(i), cast(values[j++])));
+            return true;
+        }
+
+        @Override public void forEachRemaining (Consumer<? super Pair<K, V>> action)
+        {
+            for (; j < end; ++j) {
+                while (offsets[i + 1] <= j) ++i;
+                action.accept(new Pair<>(keyAt(i), cast(values[j])));
+            }
+        }
+
+        @Override public Spliterator<Pair<K, V>> trySplit()
+        {
+            int mid = (j + end) >>> 1;
+            if (mid <= j) return null;
+            PairSpliterator prefix = new PairSpliterator(j, mid);
+            j = mid;
+            i = keyIndexOf(mid);
+            return prefix;
+        }
+
+        @Override public long estimateSize() {
+            return end - j;
+        }
+
+        @Override public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,387 @@
+// Generated from templates/PrimitiveMultiMap.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.multimap;
+
+import norswap.utils.Strings;
+import norswap.utils.data.functions.IntIntConsumer;
+import norswap.utils.data.structures.HashTables;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A multimap from {@code int} keys to {@code int} values, which does not box keys or values,
+ * and which does not allocate any object per key besides the array holding its values.
+ *
+ * <p>Keys are stored in an open-addressing hash table (with linear probing, see {@link
+ * HashTables}), alongside an array of values and the number of values for each key. Value arrays
+ * double in size when full; call {@link #trimToSize()} once the multimap is built to release the
+ * spare capacity.
+ *
+ * <p>Duplicate values are permitted, and the values of a key are kept in insertion order (except
+ * when using {@link #delete}).
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class IntMultiMap
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private static final int[] EMPTY = new int[0];
+
+    // ---------------------------------------------------------------------------------------------
+
+    private int[] keys;
+
+    /** Values for the key in the same slot, or null if the slot is free. */
+    private int[][] values;
+
+    /** Number of values for the key in the same slot. */
+    private int[] counts;
+
+    private int size;
+
+    private long totalSize;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a multimap that can hold {@code expectedKeys} keys without resizing its table.
+     */
+    public IntMultiMap (int expectedKeys)
+    {
+        int capacity = HashTables.capacityFor(expectedKeys);
+        keys = new int[capacity];
+        values = new int[capacity][];
+        counts = new int[capacity];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public IntMultiMap() {
+        this(16);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of keys in the multimap.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the total number of values in the multimap.
+     */
+    public long totalSize() {
+        return totalSize;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the multimap has no keys.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the slot holding {@code key}, or {@code -1 - slot} where slot is the free slot where
+     * it would be inserted.
+     */
+    private int slot (int key)
+    {
+        int mask = keys.length - 1;
+        int slot = HashTables.slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask)
+            if (keys[slot] == key) return slot;
+        return -1 - slot;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the slot holding {@code key}, after inserting it if needed.
+     */
+    private int insert (int key)
+    {
+        int slot = slot(key);
+        if (slot >= 0) return slot;
+        if (size + 1 > HashTables.maxFill(keys.length)) {
+            rehash(keys.length * 2);
+            slot = slot(key);
+        }
+        slot = -1 - slot;
+        keys[slot] = key;
+        values[slot] = EMPTY;
+        ++size;
+        return slot;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void rehash (int capacity)
+    {
+        int[] oldKeys = keys;
+        int[][] oldValues = values;
+        int[] oldCounts = counts;
+        keys = new int[capacity];
+        values = new int[capacity][];
+        counts = new int[capacity];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldValues[i] == null) continue;
+            int slot = -1 - slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Frees {@code slot}, shifting back the following entries of the probe sequence as needed.
+     */
+    private void free (int slot)
+    {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            // move i into the hole iff the hole is between i's ideal slot and i (cyclically)
+            if (((i - HashTables.slot(keys[i], mask)) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                counts[hole] = counts[i];
+                hole = i;
+            }
+        }
+        values[hole] = null;
+        counts[hole] = 0;
+        --size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff {@code key} is bound to at least one value.
+     */
+    public boolean containsKey (int key) {
+        return slot(key) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of values bound to {@code key}.
+     */
+    public int count (int key)
+    {
+        int slot = slot(key);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the values bound to {@code key} (empty if there are none).
+     */
+    public int[] get (int key)
+    {
+        int slot = slot(key);
+        return slot < 0 ? EMPTY : Arrays.copyOf(values[slot], counts[slot]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the {@code j}-th value bound to {@code key}.
+     *
+     * @throws IndexOutOfBoundsException if {@code key} does not have that many values.
+     */
+    public int get (int key, int j)
+    {
+        int slot = slot(key);
+        if (slot < 0 || j < 0 || j >= counts[slot]) throw new IndexOutOfBoundsException();
+        return values[slot][j];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates {@code value} with {@code key}, while preserving all other associated values.
+     */
+    public void add (int key, int value)
+    {
+        int slot = insert(key);
+        int[] array = values[slot];
+        int count = counts[slot];
+        if (count == array.length)
+            values[slot] = array = Arrays.copyOf(array, Math.max(2, count * 2));
+        array[count] = value;
+        counts[slot] = count + 1;
+        ++totalSize;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates all values in {@code items} with {@code key}, while preserving all other
+     * associated values.
+     */
+    public void addAll (int key, int... items) {
+        addAll(key, items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates the values of {@code items} in {@code [from, to[} with {@code key}, while
+     * preserving all other associated values.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     */
+    public void addAll (int key, int[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        if (from == to) return;
+        int slot = insert(key);
+        int count = counts[slot];
+        int n = to - from;
+        if (count + n > values[slot].length)
+            values[slot] = Arrays.copyOf(values[slot], Math.max(count + n, count * 2));
+        System.arraycopy(items, from, values[slot], count, n);
+        counts[slot] = count + n;
+        totalSize += n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the first occurrence of {@code value} from the values bound to {@code key}, and
+     * returns true iff there was one. If the last value bound to {@code key} is removed, the key
+     * is removed. The last value bound to the key takes the place of the removed value.
+     */
+    public boolean delete (int key, int value)
+    {
+        int slot = slot(key);
+        if (slot < 0) return false;
+        int[] array = values[slot];
+        int count = counts[slot];
+        for (int j = 0; j < count; ++j) {
+            if (array[j] != value) continue;
+            array[j] = array[count - 1];
+            --totalSize;
+            if (count == 1) free(slot);
+            else counts[slot] = count - 1;
+            return true;
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes {@code key} and returns the values that were bound to it (empty if there were none).
+     */
+    public int[] remove (int key)
+    {
+        int slot = slot(key);
+        if (slot < 0) return EMPTY;
+        int[] out = Arrays.copyOf(values[slot], counts[slot]);
+        totalSize -= counts[slot];
+        free(slot);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all keys, keeping the capacity of the hash table.
+     */
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+        totalSize = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Shrinks the value arrays so that they hold no spare capacity.
+     */
+    public void trimToSize()
+    {
+        for (int i = 0; i < values.length; ++i)
+            if (values[i] != null && values[i].length != counts[i])
+                values[i] = Arrays.copyOf(values[i], counts[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each value bound to {@code key}, in order.
+     */
+    public void forEach (int key, IntConsumer f)
+    {
+        int slot = slot(key);
+        if (slot < 0) return;
+        int[] array = values[slot];
+        for (int j = 0, count = counts[slot]; j < count; ++j)
+            f.accept(array[j]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each key, in unspecified order.
+     */
+    public void forEachKey (IntConsumer f)
+    {
+        for (int i = 0; i < keys.length; ++i)
+            if (values[i] != null) f.accept(keys[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each (key, value) pair, in unspecified key order.
+     */
+    public void forEachPair (IntIntConsumer f)
+    {
+        for (int i = 0; i < keys.length; ++i) {
+            int[] array = values[i];
+            if (array == null) continue;
+            for (int j = 0; j < counts[i]; ++j)
+                f.accept(keys[i], array[j]);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("{");
+        for (int i = 0; i < keys.length; ++i) {
+            if (values[i] == null) continue;
+            b.append(keys[i]).append("=[");
+            for (int j = 0; j < counts[i]; ++j)
+                b.append(values[i][j]).append(", ");
+            Strings.pop(b, 2);
+            b.append("], ");
+        }
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("}");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
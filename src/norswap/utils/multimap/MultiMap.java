@@ -4,6 +4,7 @@ import norswap.utils.data.wrappers.Pair;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
@@ -105,6 +106,29 @@ public interface MultiMap<K, V> extends Map<K, Collection<V>>
 
     // ---------------------------------------------------------------------------------------------
 
+    /**
+     * Calls {@code f} with each (key, value) pair in the multimap (i.e, keys are repeated for each
+     * associated value), without allocating a {@link Pair} for each.
+     */
+    default void forEachPair (BiConsumer<? super K, ? super V> f)
+    {
+        for (Entry<K, Collection<V>> e: entrySet())
+            for (V v: e.getValue())
+                f.accept(e.getKey(), v);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an immutable copy of this multimap with packed storage, optimized for reads.
+     * See {@link FrozenMultiMap}.
+     */
+    default FrozenMultiMap<K, V> freeze() {
+        return new FrozenMultiMap<>(this);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Returns a flattened collection containing all the values associated with all keys in the
      * multimap.
@@ -198,4 +222,31 @@ public interface MultiMap<K, V> extends Map<K, Collection<V>>
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a concurrent {@link Collector} that extracts keys and values from each item and adds
+     * this entry to a single {@link ConcurrentMultiMap}, shared by all threads when collecting a
+     * parallel stream.
+     */
+    static <T, K, V> MultiMapCollector<T, K, V>
+    concurrentCollector (Function<T, K> keyExtractor, Function<T, V> valueExtractor) {
+        return new MultiMapCollector<>(false, true, keyExtractor, valueExtractor);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a concurrent {@link Collector} that extracts keys and values from each item and adds
+     * this entry to a single {@link ConcurrentMultiMap}, shared by all threads when collecting a
+     * parallel stream.
+     *
+     * <p>The returned multimap will eliminate duplicate values (cf. {@link
+     * ConcurrentMultiMap#ConcurrentMultiMap(boolean)}).
+     */
+    static <T, K, V> MultiMapCollector<T, K, V>
+    concurrentSetCollector (Function<T, K> keyExtractor, Function<T, V> valueExtractor) {
+        return new MultiMapCollector<>(true, true, keyExtractor, valueExtractor);
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
@@ -1,6 +1,8 @@
 package norswap.utils.multimap;
 
 import norswap.utils.Vanilla;
+import java.util.Collection;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -9,22 +11,38 @@ import java.util.function.Supplier;
 import java.util.stream.Collector;
 
 /**
- * See {@link MultiMap#collector(Function, Function)} and {@link MultiMap#setCollector(Function,
- * Function)}.
+ * See {@link MultiMap#collector(Function, Function)}, {@link MultiMap#setCollector(Function,
+ * Function)}, {@link MultiMap#concurrentCollector(Function, Function)} and {@link
+ * MultiMap#concurrentSetCollector(Function, Function)}.
+ *
+ * <p>Non-concurrent collectors combine partial results by merging the smaller multimap into the
+ * larger one, reusing the value collections of the smaller multimap for keys that the larger one
+ * doesn't have.
+ *
+ * <p>Concurrent collectors accumulate into a single {@link ConcurrentMultiMap} shared by all
+ * threads, so no merging is needed for parallel streams.
  */
 public final class MultiMapCollector<T, K, V> implements Collector<T, MultiMap<K, V>, MultiMap<K, V>>
 {
     private final boolean set;
+    private final boolean concurrent;
     private final Function<T, K> keyExtractor;
     private final Function<T, V> valueExtractor;
 
     MultiMapCollector (boolean set, Function<T, K> keyExtractor, Function<T, V> valueExtractor) {
+        this(set, false, keyExtractor, valueExtractor);
+    }
+
+    MultiMapCollector (boolean set, boolean concurrent,
+                       Function<T, K> keyExtractor, Function<T, V> valueExtractor) {
         this.set = set;
+        this.concurrent = concurrent;
         this.keyExtractor = keyExtractor;
         this.valueExtractor = valueExtractor;
     }
 
     @Override public Supplier<MultiMap<K, V>> supplier () {
+        if (concurrent) return () -> new ConcurrentMultiMap<>(set);
         return set ? MultiHashSetMap::new : MultiHashMap::new;
     }
 
@@ -35,7 +53,35 @@ public final class MultiMapCollector<T, K, V> implements Collector<T, MultiMap<K
 
     @Override
     public BinaryOperator<MultiMap<K, V>> combiner () {
-        return (a, b) -> { a.add(b); return a; };
+        return MultiMapCollector::merge;
+    }
+
+    /**
+     * Merges {@code a} and {@code b}, which must have the same type, into the largest of the two,
+     * and returns it. The other multimap must not be used anymore, as its value collections may
+     * have been moved into the result.
+     */
+    private static <K, V> MultiMap<K, V> merge (MultiMap<K, V> a, MultiMap<K, V> b)
+    {
+        if (a.size() < b.size()) {
+            MultiMap<K, V> tmp = a;
+            a = b;
+            b = tmp;
+        }
+        // entry values are the raw collections, unlike the views returned by get()
+        for (Entry<K, Collection<V>> e: b.entrySet())
+            a.merge(e.getKey(), e.getValue(), MultiMapCollector::mergeCollections);
+        return a;
+    }
+
+    private static <V> Collection<V> mergeCollections (Collection<V> x, Collection<V> y)
+    {
+        if (x.size() < y.size()) {
+            y.addAll(x);
+            return y;
+        }
+        x.addAll(y);
+        return x;
     }
 
     @Override
@@ -45,6 +91,9 @@ public final class MultiMapCollector<T, K, V> implements Collector<T, MultiMap<K
 
     @Override
     public Set<Characteristics> characteristics () {
-        return Vanilla.set(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED);
+        return concurrent
+            ? Vanilla.set(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED,
+                Characteristics.CONCURRENT)
+            : Vanilla.set(Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED);
     }
 }
@@ -0,0 +1,716 @@
+package norswap.utils.multimap;
+
+import norswap.utils.data.structures.ArrayListLong;
+import norswap.utils.exceptions.Exceptions;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A multimap meant to group more (key, value) pairs than fit in memory.
+ *
+ * <p>Pairs are added to an in-memory {@link MultiHashMap} buffer. Once the buffer holds {@code
+ * maxBuffered} pairs, it is spilled to a temporary file as a run: a sequence of (key, values)
+ * records, sorted by key, along with an in-memory sparse index of its keys.
+ *
+ * <p>Runs are merged in multiple levels: whenever {@value #FAN_IN} runs of the same level exist,
+ * they are merged into a single run of the next level. The number of runs thus grows with the
+ * logarithm of the number of spills (at most {@code FAN_IN - 1} runs per level), and every pair
+ * is rewritten once per level. The sparse index of a run holds at most {@code maxBuffered /
+ * INDEX_INTERVAL} keys, so larger runs are indexed more sparsely.
+ *
+ * <p>{@link #get} looks up the key in every run (using the sparse index to seek close to the key)
+ * and in the buffer. {@link #forEach} first merges runs until there are at most {@value #FAN_IN}
+ * left, then performs a k-way merge of these runs and of the buffer, enumerating keys in sorted
+ * order, each with all its values. The values of a key are always returned in insertion order.
+ *
+ * <p>The memory usage is thus bounded by the buffer, the sparse indices, and the I/O buffers of
+ * at most {@value #FAN_IN} files read at once. One file channel is kept open per run.
+ *
+ * <p>Keys and values are written to disk using {@link Codec}s. The comparator must be consistent
+ * with {@link Object#equals}, as it is used to merge runs while the buffer relies on hashing.
+ *
+ * <p>The map holds temporary files, and so should be {@link #close() closed} after use. This class
+ * is not thread-safe, and the map must not be modified during {@link #forEach}.
+ */
+public final class SpillingMultiMap<K, V> implements AutoCloseable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Writes and reads values of type {@code T} to and from a binary stream.
+     */
+    public interface Codec<T>
+    {
+        void write (DataOutput out, T value) throws IOException;
+
+        T read (DataInput in) throws IOException;
+
+        /** A codec for non-null integers. */
+        static Codec<Integer> ints() {
+            return of(DataOutput::writeInt, DataInput::readInt);
+        }
+
+        /** A codec for non-null longs. */
+        static Codec<Long> longs() {
+            return of(DataOutput::writeLong, DataInput::readLong);
+        }
+
+        /** A codec for non-null strings, encoded in UTF-8. */
+        static Codec<String> strings()
+        {
+            return of(
+                (out, value) -> {
+                    byte[] bytes = value.getBytes(UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                },
+                in -> {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    return new String(bytes, UTF_8);
+                });
+        }
+
+        /** Creates a codec from a pair of lambdas. */
+        static <T> Codec<T> of (Writer<T> writer, Reader<T> reader)
+        {
+            return new Codec<T>() {
+                @Override public void write (DataOutput out, T value) throws IOException {
+                    writer.write(out, value);
+                }
+                @Override public T read (DataInput in) throws IOException {
+                    return reader.read(in);
+                }
+            };
+        }
+
+        /** See {@link #of}. */
+        @FunctionalInterface interface Writer<T> {
+            void write (DataOutput out, T value) throws IOException;
+        }
+
+        /** See {@link #of}. */
+        @FunctionalInterface interface Reader<T> {
+            T read (DataInput in) throws IOException;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Minimum number of records between two keys of the sparse index of a run. */
+    public static final int INDEX_INTERVAL = 64;
+
+    /**
+     * Maximum number of runs merged at once, and number of runs of a level that triggers a merge.
+     */
+    public static final int FAN_IN = 16;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /** Size of the buffer used by {@link #get}, which only reads records between two index keys. */
+    private static final int SEEK_BUFFER_SIZE = 1 << 12;
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final Comparator<? super K> comparator;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int maxBuffered;
+
+    /** Directory for the run files, or null for the default temporary-file directory. */
+    private final Path directory;
+
+    private MultiHashMap<K, V> buffer = new MultiHashMap<>();
+    private int buffered;
+
+    private final ArrayList<Run<K>> runs = new ArrayList<>();
+
+    private long size;
+
+    private boolean closed;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap that keeps at most {@code maxBuffered} pairs in memory before
+     * spilling them to a temporary file in {@code directory}.
+     *
+     * @throws IllegalArgumentException if {@code maxBuffered} is not positive.
+     */
+    public SpillingMultiMap (
+            Comparator<? super K> comparator, Codec<K> keyCodec, Codec<V> valueCodec,
+            int maxBuffered, Path directory)
+    {
+        if (maxBuffered <= 0)
+            throw new IllegalArgumentException("maxBuffered must be positive: " + maxBuffered);
+        this.comparator = comparator;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.maxBuffered = maxBuffered;
+        this.directory = directory;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new multimap that keeps at most {@code maxBuffered} pairs in memory before
+     * spilling them to a file in the default temporary-file directory.
+     *
+     * @throws IllegalArgumentException if {@code maxBuffered} is not positive.
+     */
+    public SpillingMultiMap (
+            Comparator<? super K> comparator, Codec<K> keyCodec, Codec<V> valueCodec,
+            int maxBuffered)
+    {
+        this(comparator, keyCodec, valueCodec, maxBuffered, null);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link Collector} that extracts keys and values from each item and adds this entry
+     * to a multimap created by {@code supplier}. Partial results are merged by re-adding the pairs
+     * of one multimap into the other, after which the former is closed.
+     */
+    public static <T, K, V> Collector<T, ?, SpillingMultiMap<K, V>> collector (
+            Supplier<SpillingMultiMap<K, V>> supplier,
+            Function<T, K> keyExtractor, Function<T, V> valueExtractor)
+    {
+        return Collector.of(
+            supplier,
+            (map, item) -> map.add(keyExtractor.apply(item), valueExtractor.apply(item)),
+            (a, b) -> { a.add(b); return a; },
+            Characteristics.IDENTITY_FINISH, Characteristics.UNORDERED);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the total number of pairs in the multimap.
+     */
+    public long size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of runs currently on disk.
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("multimap is closed");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates {@code value} with {@code key}, while preserving all other associated values.
+     * This may cause the buffer to be spilled to disk.
+     *
+     * @throws IllegalStateException if the multimap is closed.
+     */
+    public void add (K key, V value)
+    {
+        checkOpen();
+        buffer.add(key, value);
+        ++size;
+        if (++buffered == maxBuffered)
+            spill();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Associates all values in {@code values} with {@code key}, while preserving all other
+     * associated values. This may cause the buffer to be spilled to disk.
+     *
+     * @throws IllegalStateException if the multimap is closed.
+     */
+    public void addAll (K key, Iterable<V> values) {
+        for (V value: values) add(key, value);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all pairs from {@code other} into this multimap, then closes {@code other}.
+     *
+     * @throws IllegalStateException if either multimap is closed.
+     */
+    public void add (SpillingMultiMap<K, V> other)
+    {
+        other.forEach(this::addAll);
+        other.close();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the buffer to a new run file, empties it, then merges runs as needed.
+     */
+    private void spill()
+    {
+        if (buffered == 0) return;
+        ArrayList<K> keys = new ArrayList<>(buffer.keySet());
+        keys.sort(comparator);
+
+        try {
+            try (RunWriter writer = new RunWriter(0, keys.size())) {
+                for (K key: keys)
+                    writer.write(key, buffer.get(key));
+                runs.add(writer.finish());
+            }
+            buffer = new MultiHashMap<>();
+            buffered = 0;
+
+            // Runs are ordered from oldest to newest, and so by non-increasing level.
+            while (runs.size() >= FAN_IN) {
+                int from = runs.size() - FAN_IN;
+                int level = runs.get(from).level;
+                if (level != runs.get(runs.size() - 1).level) break;
+                mergeRuns(from, level + 1);
+            }
+        } catch (IOException e) {
+            throw Exceptions.runtime(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the runs from index {@code from} to the end of {@link #runs} with a single run of
+     * the given level, holding all their records.
+     */
+    private void mergeRuns (int from, int level) throws IOException
+    {
+        List<Run<K>> group = runs.subList(from, runs.size());
+        long records = 0;
+        for (Run<K> run: group) records += run.records;
+
+        Run<K> merged;
+        try (RunWriter writer = new RunWriter(level, records)) {
+            merge(group, false, writer::write);
+            merged = writer.finish();
+        }
+
+        IOException error = null;
+        for (Run<K> run: group)
+            error = run.delete(error);
+        group.clear();
+        runs.add(merged);
+        if (error != null) throw error;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new list holding the values bound to {@code key}, in insertion order.
+     *
+     * @throws IllegalStateException if the multimap is closed.
+     */
+    public List<V> get (K key)
+    {
+        checkOpen();
+        ArrayList<V> out = new ArrayList<>();
+        try {
+            for (Run<K> run: runs)
+                collect(run, key, out);
+        } catch (IOException e) {
+            throw Exceptions.runtime(e);
+        }
+        out.addAll(buffer.get(key));
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds the values bound to {@code key} in {@code run} to {@code out}.
+     */
+    private void collect (Run<K> run, K key, List<V> out) throws IOException
+    {
+        int i = Collections.binarySearch(run.indexKeys, key, comparator);
+        if (i < 0) i = -i - 2;
+        if (i < 0) return; // before the first key
+
+        FileChannel channel = run.channel();
+        channel.position(run.indexOffsets.get(i));
+        // not closed, as that would close the channel
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel), SEEK_BUFFER_SIZE));
+        long end = Math.min(run.records, (i + 1L) * run.interval);
+        for (long r = (long) i * run.interval; r < end; ++r) {
+            int cmp = comparator.compare(keyCodec.read(in), key);
+            if (cmp > 0) return;
+            int count = in.readInt();
+            for (int j = 0; j < count; ++j) {
+                V value = valueCodec.read(in);
+                if (cmp == 0) out.add(value);
+            }
+            if (cmp == 0) return;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each key in sorted order, along with a new list of all the values bound
+     * to the key, in insertion order. Only the values of a single key are held in memory at any
+     * time (on top of the buffer).
+     *
+     * <p>If there are more than {@value #FAN_IN} runs, the newest ones are first merged together,
+     * so that at most {@value #FAN_IN} files are read at once.
+     *
+     * @throws IllegalStateException if the multimap is closed.
+     */
+    public void forEach (BiConsumer<? super K, ? super List<V>> f)
+    {
+        checkOpen();
+        try {
+            while (runs.size() > FAN_IN) {
+                int from = runs.size() - Math.min(FAN_IN, runs.size() - FAN_IN + 1);
+                mergeRuns(from, runs.get(from).level);
+            }
+            merge(runs, true, f::accept);
+        } catch (IOException e) {
+            throw Exceptions.runtime(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Performs a k-way merge of {@code sources} (ordered from oldest to newest) and, if {@code
+     * withBuffer} is set, of the buffer, calling {@code f} with each key in sorted order along
+     * with a new list of all its values, in insertion order.
+     */
+    private void merge (List<Run<K>> sources, boolean withBuffer, RecordConsumer<K, V> f)
+            throws IOException
+    {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = comparator.compare(a.key, b.key);
+            return cmp != 0 ? cmp : Integer.compare(a.order, b.order);
+        });
+
+        ArrayList<RunCursor> cursors = new ArrayList<>();
+        try {
+            for (Run<K> run: sources) {
+                RunCursor cursor = new RunCursor(run, cursors.size());
+                cursors.add(cursor);
+                if (cursor.next()) queue.add(cursor);
+            }
+            if (withBuffer) {
+                Cursor bufferCursor = new BufferCursor(sources.size());
+                if (bufferCursor.next()) queue.add(bufferCursor);
+            }
+
+            while (!queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                K key = cursor.key;
+                ArrayList<V> values = new ArrayList<>();
+                cursor.values(values);
+                if (cursor.next()) queue.add(cursor);
+                while (!queue.isEmpty() && comparator.compare(queue.peek().key, key) == 0) {
+                    cursor = queue.poll();
+                    cursor.values(values);
+                    if (cursor.next()) queue.add(cursor);
+                }
+                f.accept(key, values);
+            }
+        } finally {
+            for (RunCursor cursor: cursors)
+                try {
+                    cursor.in.close();
+                } catch (IOException e) {
+                    // ignore, the file is only read
+                }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code f} with each (key, value) pair, in key order (see {@link #forEach}).
+     *
+     * @throws IllegalStateException if the multimap is closed.
+     */
+    public void forEachPair (BiConsumer<? super K, ? super V> f) {
+        forEach((key, values) -> values.forEach(value -> f.accept(key, value)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Deletes the run files and empties the buffer. The multimap cannot be used afterwards.
+     * Calling this method more than once has no effect.
+     */
+    @Override public void close()
+    {
+        if (closed) return;
+        closed = true;
+        buffer = new MultiHashMap<>();
+        buffered = 0;
+        size = 0;
+
+        IOException error = null;
+        for (Run<K> run: runs)
+            error = run.delete(error);
+        runs.clear();
+        if (error != null)
+            throw Exceptions.runtime(error);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** A file holding records sorted by key, along with its sparse index. */
+    private static final class Run<K>
+    {
+        final Path file;
+        final int level;
+
+        /** Number of records between two keys of the sparse index. */
+        final int interval;
+
+        long records;
+        final ArrayList<K> indexKeys = new ArrayList<>();
+        final ArrayListLong indexOffsets = new ArrayListLong();
+
+        /** Channel used by {@link SpillingMultiMap#get}, opened on first use. */
+        private FileChannel channel;
+
+        Run (Path file, int level, int interval) {
+            this.file = file;
+            this.level = level;
+            this.interval = interval;
+        }
+
+        FileChannel channel() throws IOException
+        {
+            if (channel == null)
+                channel = FileChannel.open(file, READ);
+            return channel;
+        }
+
+        /**
+         * Closes the channel and deletes the file. Returns {@code error}, to which any exception
+         * that occurred is added as suppressed, or that exception if {@code error} is null.
+         */
+        IOException delete (IOException error)
+        {
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                error = chain(error, e);
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                error = chain(error, e);
+            }
+            return error;
+        }
+
+        private static IOException chain (IOException error, IOException e)
+        {
+            if (error == null) return e;
+            error.addSuppressed(e);
+            return error;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Receives the records of a merge, see {@link #merge}. */
+    @FunctionalInterface private interface RecordConsumer<K, V> {
+        void accept (K key, List<V> values) throws IOException;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Writes a new run, whose records must be written in key order. If the writer is closed
+     * before {@link #finish()} is called, the file is deleted.
+     */
+    private final class RunWriter implements AutoCloseable
+    {
+        private final Run<K> run;
+        private final OutputStream out;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream record = new DataOutputStream(bytes);
+        private long position;
+        private boolean finished;
+
+        /** {@code maxRecords} is an upper bound on the number of records, to size the index. */
+        RunWriter (int level, long maxRecords) throws IOException
+        {
+            Path file = directory == null
+                ? Files.createTempFile("multimap-", ".run")
+                : Files.createTempFile(directory, "multimap-", ".run");
+            long maxIndexSize = Math.max(1, maxBuffered / INDEX_INTERVAL);
+            long interval = (maxRecords + maxIndexSize - 1) / maxIndexSize;
+            interval = Math.min(Math.max(INDEX_INTERVAL, interval), Integer.MAX_VALUE);
+            this.run = new Run<>(file, level, (int) interval);
+            try {
+                this.out = new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE);
+            } catch (IOException e) {
+                throw run.delete(e);
+            }
+        }
+
+        void write (K key, Collection<V> values) throws IOException
+        {
+            bytes.reset();
+            keyCodec.write(record, key);
+            record.writeInt(values.size());
+            for (V value: values) valueCodec.write(record, value);
+            if (run.records++ % run.interval == 0) {
+                run.indexKeys.add(key);
+                run.indexOffsets.add(position);
+            }
+            bytes.writeTo(out);
+            position += bytes.size();
+        }
+
+        /** Flushes the file and returns the run. */
+        Run<K> finish() throws IOException
+        {
+            out.close();
+            finished = true;
+            return run;
+        }
+
+        @Override public void close() throws IOException
+        {
+            if (finished) return;
+            IOException error = null;
+            try {
+                out.close();
+            } catch (IOException e) {
+                error = e;
+            }
+            error = run.delete(error);
+            if (error != null) throw error;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Enumerates the keys of a run or of the buffer, in order. */
+    private abstract class Cursor
+    {
+        /** Used to break ties between keys, so that older values come first. */
+        final int order;
+
+        K key;
+
+        Cursor (int order) {
+            this.order = order;
+        }
+
+        /** Moves to the next key and returns true, or returns false if there are no more keys. */
+        abstract boolean next() throws IOException;
+
+        /** Adds the values of the current key to {@code out}. Must be called once per key. */
+        abstract void values (List<V> out) throws IOException;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final class RunCursor extends Cursor
+    {
+        final DataInputStream in;
+        long remaining;
+
+        RunCursor (Run<K> run, int order) throws IOException
+        {
+            super(order);
+            this.in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(run.file), IO_BUFFER_SIZE));
+            this.remaining = run.records;
+        }
+
+        @Override boolean next() throws IOException
+        {
+            if (remaining == 0) return false;
+            --remaining;
+            key = keyCodec.read(in);
+            return true;
+        }
+
+        @Override void values (List<V> out) throws IOException
+        {
+            int count = in.readInt();
+            for (int j = 0; j < count; ++j)
+                out.add(valueCodec.read(in));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final class BufferCursor extends Cursor
+    {
+        final Iterator<K> keys;
+
+        BufferCursor (int order)
+        {
+            super(order);
+            ArrayList<K> sorted = new ArrayList<>(buffer.keySet());
+            sorted.sort(comparator);
+            this.keys = sorted.iterator();
+        }
+
+        @Override boolean next()
+        {
+            if (!keys.hasNext()) return false;
+            key = keys.next();
+            return true;
+        }
+
+        @Override void values (List<V> out) {
+            out.addAll(buffer.get(key));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
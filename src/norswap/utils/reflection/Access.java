@@ -1,17 +1,26 @@
 package norswap.utils.reflection;
 
+import norswap.utils.data.wrappers.Pair;
 import norswap.utils.exceptions.Exceptions;
+import java.lang.invoke.CallSite;
 import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static norswap.utils.Util.cast;
 import static norswap.utils.exceptions.Exceptions.runtime;
@@ -72,8 +81,9 @@ import static norswap.utils.exceptions.Exceptions.runtime;
  * Unlike the rest of this library (which is a bit more battle-tested), this code is very much
  * experimental, untested, and a work in progress.
  * <p>
- * In particular, it would be good to include utilities that help use a {@link LambdaMetafactory}
- * to create a call site dedicated to a handle.
+ * The utilities in the "Lambda Generation" section use a {@link LambdaMetafactory} to create a
+ * dedicated call site for a method (case (B) above), exposed as an instance of a functional
+ * interface (see {@link #lambda(Class, Method)}).
  */
 public final class Access
 {
@@ -90,73 +100,727 @@ public final class Access
     // region Field Lookup
     // =============================================================================================
 
-    // TODO field lookup + rewrite value access to use it
+    /**
+     * A field resolved from a class and a name, with cached handles to access it. The handles are
+     * created lazily, as they are not needed for every lookup.
+     */
+    private static final class FieldAccess
+    {
+        final Field field;
+
+        /** Exact-typed getter, see {@link #getter(Class, String)}. */
+        private MethodHandle getter;
+
+        /** Exact-typed setter, see {@link #setter(Class, String)}. */
+        private MethodHandle setter;
+
+        /** {@code (Object)T} getter (ignoring the receiver if static), T being the field type. */
+        private MethodHandle receiverGetter;
+
+        /** {@code (Object,T)void} setter (ignoring the receiver if static). */
+        private MethodHandle receiverSetter;
+
+        /** {@code (Object)Object} getter (ignoring the receiver if static). */
+        private MethodHandle erasedGetter;
+
+        /** {@code (Object,Object)void} setter (ignoring the receiver if static). */
+        private MethodHandle erasedSetter;
+
+        /** Last handle returned by {@link #getterAs}. */
+        private MethodHandle typedGetter;
+
+        /** Last handle returned by {@link #setterAs}. */
+        private MethodHandle typedSetter;
+
+        FieldAccess (Field field) {
+            this.field = field;
+        }
+
+        // Races are benign below: at worst, equivalent handles are created more than once.
+
+        MethodHandle getter() throws IllegalAccessException {
+            if (getter == null) getter = lookup.get().unreflectGetter(field);
+            return getter;
+        }
+
+        MethodHandle setter() throws IllegalAccessException {
+            if (setter == null) setter = lookup.get().unreflectSetter(field);
+            return setter;
+        }
+
+        MethodHandle receiverGetter() throws IllegalAccessException
+        {
+            if (receiverGetter == null) {
+                MethodHandle handle = getter();
+                receiverGetter = Modifier.isStatic(field.getModifiers())
+                    ? MethodHandles.dropArguments(handle, 0, Object.class)
+                    : handle.asType(handle.type().changeParameterType(0, Object.class));
+            }
+            return receiverGetter;
+        }
+
+        MethodHandle receiverSetter() throws IllegalAccessException
+        {
+            if (receiverSetter == null) {
+                MethodHandle handle = setter();
+                receiverSetter = Modifier.isStatic(field.getModifiers())
+                    ? MethodHandles.dropArguments(handle, 0, Object.class)
+                    : handle.asType(handle.type().changeParameterType(0, Object.class));
+            }
+            return receiverSetter;
+        }
+
+        MethodHandle erasedGetter() throws IllegalAccessException
+        {
+            if (erasedGetter == null)
+                erasedGetter = receiverGetter().asType(
+                    MethodType.methodType(Object.class, Object.class));
+            return erasedGetter;
+        }
+
+        MethodHandle erasedSetter() throws IllegalAccessException
+        {
+            if (erasedSetter == null)
+                erasedSetter = receiverSetter().asType(
+                    MethodType.methodType(void.class, Object.class, Object.class));
+            return erasedSetter;
+        }
+
+        /** {@code (Object)type} getter, converting values as per {@link MethodHandle#asType}. */
+        MethodHandle getterAs (Class<?> type) throws IllegalAccessException
+        {
+            MethodHandle handle = typedGetter;
+            if (handle == null || handle.type().returnType() != type)
+                typedGetter = handle =
+                    receiverGetter().asType(MethodType.methodType(type, Object.class));
+            return handle;
+        }
+
+        /** {@code (Object,type)void} setter, converting values like {@link #getterAs}. */
+        MethodHandle setterAs (Class<?> type) throws IllegalAccessException
+        {
+            MethodHandle handle = typedSetter;
+            if (handle == null || handle.type().parameterType(1) != type)
+                typedSetter = handle =
+                    receiverSetter().asType(MethodType.methodType(void.class, Object.class, type));
+            return handle;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * For each class, maps field names to the field they resolve to from that class (cf. {@link
+     * #fieldOrNull(Class, String)}).
+     */
+    private static final ClassValue<ConcurrentHashMap<String, FieldAccess>> fields =
+        new ClassValue<ConcurrentHashMap<String, FieldAccess>>() {
+            @Override protected ConcurrentHashMap<String, FieldAccess> computeValue (Class<?> k) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the cached {@link FieldAccess} for the named field of the class (see {@link
+     * #fieldOrNull(Class, String)}), or null if there is no such field.
+     */
+    private static FieldAccess fieldAccess (Class<?> klass, String name)
+    {
+        ConcurrentHashMap<String, FieldAccess> map = fields.get(klass);
+        FieldAccess access = map.get(name);
+        if (access != null) return access;
+
+        for (Class<?> current = klass; current != null; current = current.getSuperclass())
+            for (Field field: current.getDeclaredFields())
+                if (field.getName().equals(name)) {
+                    field.setAccessible(true);
+                    FieldAccess fresh = new FieldAccess(field);
+                    access = map.putIfAbsent(name, fresh);
+                    return access != null ? access : fresh;
+                }
+
+        return null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #fieldAccess}, but throws a {@link NoSuchFieldException} (wrapped by {@link
+     * Exceptions#runtime}) if there is no such field.
+     */
+    private static FieldAccess existingFieldAccess (Class<?> klass, String name)
+    {
+        FieldAccess access = fieldAccess(klass, name);
+        if (access == null) throw runtime(new NoSuchFieldException(name));
+        return access;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #fieldAccess}, but throws a {@link NoSuchFieldError} if there is no such field.
+     */
+    private static FieldAccess fieldAccessOrError (Class<?> klass, String name)
+    {
+        FieldAccess access = fieldAccess(klass, name);
+        if (access == null) throw new NoSuchFieldError(
+            String.format("field %s in class %s", name, klass.getCanonicalName()));
+        return access;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Get the given (potentially private) field, specified by its name, declared in the given
+     * class or in the lowest of its superclasses that declares a field with that name.
+     *
+     * <p>The field is set accessible in the process. The lookup is cached, so that subsequent
+     * calls for the same class and name are cheap.
+     *
+     * <p>If no field with the given name is found, {@code null} is returned.
+     */
+    public static Field fieldOrNull (Class<?> klass, String name)
+    {
+        FieldAccess access = fieldAccess(klass, name);
+        return access == null ? null : access.field;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Get the given (potentially private) field, specified by its name, declared in the given
+     * class or in the lowest of its superclasses that declares a field with that name.
+     *
+     * <p>The field is set accessible in the process. The lookup is cached, so that subsequent
+     * calls for the same class and name are cheap.
+     *
+     * @throws NoSuchFieldError if no field with the given name is found.
+     */
+    public static Field field (Class<?> klass, String name) {
+        return fieldAccessOrError(klass, name).field;
+    }
+
+    // endregion
+    // =============================================================================================
+    // region Field Value Read/Write
+    // =============================================================================================
+
+    /**
+     * Returns the value of the (potentially private) named field of the object, looking through all
+     * of its superclass in order.
+     *
+     * <p>The field is set accessible in the process. The field lookup is cached (cf. {@link
+     * #fieldOrNull(Class, String)}) and the value is read through a cached method handle, so
+     * repeated calls for the same class and field are cheap.
+     */
+    public static <T> T get (Object object, String name) {
+        return read(existingFieldAccess(object.getClass(), name), object);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static <T> T read (FieldAccess access, Object object)
+    {
+        try {
+            return cast((Object) access.erasedGetter().invokeExact(object));
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value of the (potentially private) named field of the given class (which has to
+     * be the class declaring the field) on the given object.
+     *
+     * <p>The field is set accessible in the process. As for {@link #get(Object, String)}, the
+     * lookup is cached.
+     */
+    public static <T> T get (Object object, Class<?> klass, String name) {
+        return read(declaredFieldAccess(klass, name), object);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #existingFieldAccess}, but requires the field to be declared in {@code klass}.
+     */
+    private static FieldAccess declaredFieldAccess (Class<?> klass, String name)
+    {
+        FieldAccess access = fieldAccess(klass, name);
+        if (access == null || access.field.getDeclaringClass() != klass)
+            throw runtime(new NoSuchFieldException(name));
+        return access;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the value of the (potentially private) named field of the object, looking through all
+     * of its superclasses in order. The value is converted to the type of the field as per {@link
+     * MethodHandle#asType} (e.g. it is unboxed if the field is primitive).
+     *
+     * <p>As for {@link #get(Object, String)}, the field lookup and the handle are cached.
+     */
+    public static void set (Object object, String name, Object value) {
+        write(existingFieldAccess(object.getClass(), name), object, value);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the value of the (potentially private) named field of the given class (which has to be
+     * the class declaring the field) on the given object. The value is converted as for {@link
+     * #set(Object, String, Object)}.
+     */
+    public static void set (Object object, Class<?> klass, String name, Object value) {
+        write(declaredFieldAccess(klass, name), object, value);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void write (FieldAccess access, Object object, Object value)
+    {
+        try {
+            access.erasedSetter().invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value of the (potentially private) named {@code int} field of the object, without
+     * boxing, looking through all of its superclasses in order. The value of a field with another
+     * type is converted as per {@link MethodHandle#asType} (e.g. widened or unboxed), if possible.
+     *
+     * <p>As for {@link #get(Object, String)}, the field lookup and the handle are cached.
+     */
+    public static int getInt (Object object, String name)
+    {
+        try {
+            return (int) existingFieldAccess(object.getClass(), name)
+                .getterAs(int.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the value of the (potentially private) named {@code int} field of the object, without
+     * boxing, looking through all of its superclasses in order. The value is converted as per
+     * {@link MethodHandle#asType} (e.g. widened or boxed) if the field has another type.
+     *
+     * <p>As for {@link #get(Object, String)}, the field lookup and the handle are cached.
+     */
+    public static void setInt (Object object, String name, int value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(int.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code long} fields.
+     */
+    public static long getLong (Object object, String name)
+    {
+        try {
+            return (long) existingFieldAccess(object.getClass(), name)
+                .getterAs(long.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code long} fields.
+     */
+    public static void setLong (Object object, String name, long value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(long.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code double} fields.
+     */
+    public static double getDouble (Object object, String name)
+    {
+        try {
+            return (double) existingFieldAccess(object.getClass(), name)
+                .getterAs(double.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code double} fields.
+     */
+    public static void setDouble (Object object, String name, double value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(double.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code float} fields.
+     */
+    public static float getFloat (Object object, String name)
+    {
+        try {
+            return (float) existingFieldAccess(object.getClass(), name)
+                .getterAs(float.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code float} fields.
+     */
+    public static void setFloat (Object object, String name, float value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(float.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code short} fields.
+     */
+    public static short getShort (Object object, String name)
+    {
+        try {
+            return (short) existingFieldAccess(object.getClass(), name)
+                .getterAs(short.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code short} fields.
+     */
+    public static void setShort (Object object, String name, short value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(short.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code byte} fields.
+     */
+    public static byte getByte (Object object, String name)
+    {
+        try {
+            return (byte) existingFieldAccess(object.getClass(), name)
+                .getterAs(byte.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code byte} fields.
+     */
+    public static void setByte (Object object, String name, byte value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(byte.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code char} fields.
+     */
+    public static char getChar (Object object, String name)
+    {
+        try {
+            return (char) existingFieldAccess(object.getClass(), name)
+                .getterAs(char.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code char} fields.
+     */
+    public static void setChar (Object object, String name, char value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(char.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #getInt(Object, String)}, for {@code boolean} fields.
+     */
+    public static boolean getBoolean (Object object, String name)
+    {
+        try {
+            return (boolean) existingFieldAccess(object.getClass(), name)
+                .getterAs(boolean.class).invokeExact(object);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #setInt(Object, String, int)}, for {@code boolean} fields.
+     */
+    public static void setBoolean (Object object, String name, boolean value)
+    {
+        try {
+            existingFieldAccess(object.getClass(), name)
+                .setterAs(boolean.class).invokeExact(object, value);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** For each class, a {@code (Object,Object)void} handle implementing {@link #copyFields}. */
+    private static final ClassValue<MethodHandle> copiers = new ClassValue<MethodHandle>() {
+        @Override protected MethodHandle computeValue (Class<?> klass) {
+            return copier(klass);
+        }
+    };
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Builds a {@code (Object source, Object target)void} handle that copies all non-static,
+     * non-final fields of {@code klass} and its superclasses from {@code source} to {@code target}.
+     */
+    private static MethodHandle copier (Class<?> klass)
+    {
+        MethodType type = MethodType.methodType(void.class, Object.class, Object.class);
+        MethodHandle out = MethodHandles.dropArguments(
+            MethodHandles.constant(Object.class, null).asType(MethodType.methodType(void.class)),
+            0, Object.class, Object.class);
+
+        try {
+            for (Class<?> current = klass; current != null; current = current.getSuperclass())
+                for (Field field: current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) continue;
+                    field.setAccessible(true);
+                    FieldAccess access = new FieldAccess(field);
+                    // (target, value) -> (target, source) -> (source, target)
+                    MethodHandle copy = MethodHandles.filterArguments(
+                        access.receiverSetter(), 1, access.receiverGetter());
+                    copy = MethodHandles.permuteArguments(copy, type, 1, 0);
+                    out = MethodHandles.foldArguments(out, copy);
+                }
+        } catch (IllegalAccessException e) {
+            throw runtime(e);
+        }
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the values of all the instance fields (including private and inherited ones, but
+     * excluding final fields) of {@code source} to {@code target}, which must be an instance of
+     * the class of {@code source}. This is a shallow copy.
+     *
+     * <p>The copy is performed by a single method handle, built the first time a given class is
+     * copied.
+     *
+     * @throws IllegalArgumentException if {@code target} is not an instance of the class of
+     * {@code source}.
+     */
+    public static void copyFields (Object source, Object target)
+    {
+        Class<?> klass = source.getClass();
+        if (!klass.isInstance(target))
+            throw new IllegalArgumentException(
+                "target is not an instance of " + klass.getCanonicalName());
+        try {
+            copiers.get(klass).invokeExact(source, target);
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
 
     // endregion
     // =============================================================================================
-    // region Field Value Read/Write
+    // region Method Lookup
     // =============================================================================================
 
     /**
-     * Returns the value of the (potentially private) named field of the object, looking through all
-     * of its superclass in order.
-     *
-     * <p>The field is set accessible in the process.
-     *
-     * <p> Use {@link #get(Object, Class, String)} if you know the superclass storing the field
-     * and want better performance.
+     * Key for the method cache: the kind of lookup, the method name, and the parameter types (for
+     * handle lookups with a signature, the first type is the return type).
      */
-    public static <T> T get (Object object, String name)
+    private static final class MethodKey
     {
-        Class<?> klass = object.getClass();
-        while (true) {
-            try {
-                assert klass != null;
-                Field field = klass.getDeclaredField(name);
-                field.setAccessible(true);
-                return cast(field.get(object));
-            } catch (NoSuchFieldException e) {
-                klass = klass.getSuperclass();
-                if (klass == null)
-                    try {
-                        // do this to get a clearer exception that mentions the bottom type
-                        object.getClass().getDeclaredField(name); // always throws
-                    } catch (NoSuchFieldException e2) {
-                        throw runtime(e2);
-                    }
-                // keep looping
-            } catch (IllegalAccessException e) {
-                throw runtime(e);
-            }
+        static final int DECLARED = 0, BY_NAME = 1, BY_SIGNATURE = 2, HANDLE = 3,
+            HANDLE_BY_SIGNATURE = 4;
+
+        final int kind;
+        final String name;
+        final Class<?>[] types;
+
+        MethodKey (int kind, String name, Class<?>... types) {
+            this.kind = kind;
+            this.name = name;
+            this.types = types;
+        }
+
+        @Override public int hashCode() {
+            return 31 * (31 * kind + name.hashCode()) + Arrays.hashCode(types);
+        }
+
+        @Override public boolean equals (Object o)
+        {
+            if (!(o instanceof MethodKey)) return false;
+            MethodKey other = (MethodKey) o;
+            return kind == other.kind && name.equals(other.name)
+                && Arrays.equals(types, other.types);
         }
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    /** Cached value standing for a failed lookup. */
+    private static final Object MISSING = new Object();
+
     /**
-     * Returns the value of the (potentially private) named field of the given class (which has to
-     * be the class declaring the field) on the given object.
+     * For each class, maps method lookups to their result: a {@link Method}, a {@link
+     * MethodHandle} or {@link #MISSING}.
+     */
+    private static final ClassValue<ConcurrentHashMap<MethodKey, Object>> methods =
+        new ClassValue<ConcurrentHashMap<MethodKey, Object>>() {
+            @Override protected ConcurrentHashMap<MethodKey, Object> computeValue (Class<?> k) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final LongAdder methodCacheHits = new LongAdder();
+    private static final LongAdder methodCacheMisses = new LongAdder();
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the cached result for the lookup (possibly {@link #MISSING}), or null if the lookup
+     * hasn't been cached yet. Updates the hit and miss counters.
+     */
+    private static Object cached (Class<?> klass, MethodKey key)
+    {
+        Object out = methods.get(klass).get(key);
+        (out == null ? methodCacheMisses : methodCacheHits).increment();
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Caches the result for the lookup ({@code null} standing for a miss), and returns the cached
+     * result: if another thread cached the same lookup first, its result is returned instead, so
+     * that all callers see the same instance.
+     */
+    private static <T> T cache (Class<?> klass, MethodKey key, T value)
+    {
+        MethodKey copy = new MethodKey(key.kind, key.name, key.types.clone());
+        Object existing = methods.get(klass).putIfAbsent(copy, value == null ? MISSING : value);
+        return existing == null ? value : unmiss(existing);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static <T> T unmiss (Object cached) {
+        return cached == MISSING ? null : cast(cached);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of lookups of methods and method handles in this class that were answered
+     * from the cache (including cached failed lookups).
      *
-     * <p>The field is set accessible in the process.
+     * <p>All the method lookup methods of this class, as well as {@link #handle(Class, String)},
+     * {@link #handleWithSignature} and their {@code OrNull} variants, are cached per class and
+     * per lookup parameters (name, and signature if relevant). Failed lookups are cached too.
+     * Note that the same {@link Method} object is returned for all identical lookups.
      */
-    public static <T> T get (Object object, Class<?> klass, String name) {
-        try {
-            Field field = klass.getDeclaredField(name);
-            field.setAccessible(true);
-            return cast(field.get(object));
-        } catch (ReflectiveOperationException e) {
-            throw runtime(e);
-        }
+    public static long methodCacheHits() {
+        return methodCacheHits.sum();
     }
 
     // ---------------------------------------------------------------------------------------------
 
-    // TODO field setting functions
+    /**
+     * Returns the number of lookups of methods and method handles in this class that had to be
+     * performed because their result was not cached yet. See {@link #methodCacheHits()}.
+     */
+    public static long methodCacheMisses() {
+        return methodCacheMisses.sum();
+    }
 
-    // endregion
-    // =============================================================================================
-    // region Method Lookup
-    // =============================================================================================
+    // ---------------------------------------------------------------------------------------------
 
     /**
      * Get the given (potentially private) method <b>declared in the given class</b>, specified by
@@ -166,6 +830,16 @@ public final class Access
      * <p>If no method with the given name is found, {@code null} is returned.
      */
     public static Method declaredMethodOrNull (Class<?> klass, String name)
+    {
+        MethodKey key = new MethodKey(MethodKey.DECLARED, name);
+        Object cached = cached(klass, key);
+        if (cached != null) return unmiss(cached);
+        return cache(klass, key, findDeclaredMethod(klass, name));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Method findDeclaredMethod (Class<?> klass, String name)
     {
         return Arrays.stream(klass.getDeclaredMethods())
             .filter(m -> m.getName().equals(name))
@@ -208,6 +882,16 @@ public final class Access
      * If no method with the given signature is found, {@code null} is returned.
      */
     public static Method methodWithSignatureOrNull (Class<?> klass, String name, Class<?>... params)
+    {
+        MethodKey key = new MethodKey(MethodKey.BY_SIGNATURE, name, params);
+        Object cached = cached(klass, key);
+        if (cached != null) return unmiss(cached);
+        return cache(klass, key, findMethodWithSignature(klass, name, params));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Method findMethodWithSignature (Class<?> klass, String name, Class<?>... params)
     {
         try { // easy case: the method is public
             return klass.getMethod(name, params);
@@ -261,12 +945,22 @@ public final class Access
      * <p>If no method with the given name is found, {@code null} is returned.
      */
     public static Method methodOrNull (Class<?> klass, String name)
+    {
+        MethodKey key = new MethodKey(MethodKey.BY_NAME, name);
+        Object cached = cached(klass, key);
+        if (cached != null) return unmiss(cached);
+        return cache(klass, key, findMethod(klass, name));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Method findMethod (Class<?> klass, String name)
     {
         Deque<Class<?>> queue = new ArrayDeque<>();
         queue.addLast(klass);
         while (!queue.isEmpty()) {
             Class<?> current = queue.removeFirst();
-            Method m = declaredMethodOrNull(current, name);
+            Method m = findDeclaredMethod(current, name);
             if (m != null) return m;
 
             Class<?> superClass = current.getSuperclass();
@@ -343,13 +1037,32 @@ public final class Access
      * @throws NoSuchMethodError if no method with the given name is found.
      * @throws IllegalAccessError if the method is private or protected.
      */
-    public static MethodHandle handle (Class<?> klass, String method) {
+    public static MethodHandle handle (Class<?> klass, String method)
+    {
+        MethodKey key = new MethodKey(MethodKey.HANDLE, method);
+        Object cached = cached(klass, key);
+        if (cached == MISSING) throw new NoSuchMethodError(
+            String.format("method %s in class %s", method, klass.getCanonicalName()));
+        if (cached != null) return cast(cached);
+        try {
+            return cache(klass, key, findHandle(klass, method));
+        } catch (NoSuchMethodError e) {
+            cache(klass, key, null);
+            throw e;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static MethodHandle findHandle (Class<?> klass, String method) {
         try {
-            Method m = method(klass, method);
+            Method m = findMethod(klass, method);
+            if (m == null) throw new NoSuchMethodError(
+                String.format("method %s in class %s", method, klass.getCanonicalName()));
             return Modifier.isStatic(m.getModifiers())
-                ? lookup.get().findVirtual(klass, method,
+                ? lookup.get().findStatic(klass, method,
                     MethodType.methodType(m.getReturnType(), m.getParameterTypes()))
-                : lookup.get().findStatic(klass, method,
+                : lookup.get().findVirtual(klass, method,
                     MethodType.methodType(m.getReturnType(), m.getParameterTypes()));
         } catch (IllegalAccessException e) {
             throw new IllegalAccessError(e.getMessage());
@@ -398,6 +1111,20 @@ public final class Access
      * @throws IllegalAccessError if the method is private or protected.
      */
     public static MethodHandle handleWithSignature
+            (Class<?> klass, String method, Class<?> returnType, Class<?>... paramTypes)
+    {
+        Class<?>[] types = new Class<?>[paramTypes.length + 1];
+        types[0] = returnType;
+        System.arraycopy(paramTypes, 0, types, 1, paramTypes.length);
+        MethodKey key = new MethodKey(MethodKey.HANDLE_BY_SIGNATURE, method, types);
+        Object cached = cached(klass, key);
+        if (cached != null) return unmiss(cached);
+        return cache(klass, key, findHandleWithSignature(klass, method, returnType, paramTypes));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static MethodHandle findHandleWithSignature
             (Class<?> klass, String method, Class<?> returnType, Class<?>... paramTypes) {
         try {
             try {
@@ -444,7 +1171,337 @@ public final class Access
     // region Getter/Setter Handle Lookup
     // =============================================================================================
 
-    // TODO get method handles for setters and getters
+    /**
+     * Returns a handle that reads the (potentially private) named field, as found by {@link
+     * #field(Class, String)}. The handle has the exact type of the field, and takes the receiver
+     * as parameter unless the field is static.
+     *
+     * <p>The handle is cached, so subsequent calls for the same class and name are cheap.
+     *
+     * @throws NoSuchFieldError if no field with the given name is found.
+     */
+    public static MethodHandle getter (Class<?> klass, String name)
+    {
+        try {
+            return fieldAccessOrError(klass, name).getter();
+        } catch (IllegalAccessException e) {
+            throw runtime(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a handle that writes the (potentially private) named field, as found by {@link
+     * #field(Class, String)}. The handle takes the receiver as first parameter unless the field is
+     * static, then a value with the exact type of the field.
+     *
+     * <p>The handle is cached, so subsequent calls for the same class and name are cheap.
+     *
+     * @throws NoSuchFieldError if no field with the given name is found.
+     * @throws IllegalAccessError if the field cannot be written (e.g. it is static and final).
+     */
+    public static MethodHandle setter (Class<?> klass, String name)
+    {
+        try {
+            return fieldAccessOrError(klass, name).setter();
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    // endregion
+    // =============================================================================================
+    // region Lambda Generation
+    // =============================================================================================
+
+    /**
+     * For each class, maps (functional interface, method declared in the class) pairs to the lambda
+     * implementing the interface through the method.
+     *
+     * <p>Keyed on the declaring class rather than on the interface: interfaces such as {@link
+     * Function} are never unloaded, and would keep the methods (hence their classes and class
+     * loaders) reachable forever.
+     */
+    private static final ClassValue<ConcurrentHashMap<Pair<Class<?>, Method>, Object>> lambdas =
+        new ClassValue<ConcurrentHashMap<Pair<Class<?>, Method>, Object>>() {
+            @Override protected ConcurrentHashMap<Pair<Class<?>, Method>, Object>
+                    computeValue (Class<?> k) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an instance of the functional interface {@code iface} whose (single abstract) method
+     * calls {@code method}. If the method is not static, the receiver is the first parameter of
+     * the interface method. Parameters and return values are cast, boxed or unboxed as needed.
+     *
+     * <p>The instance is generated by a {@link LambdaMetafactory}, so that calling it is as fast
+     * as calling a regular lambda: the JIT can inline the call to {@code method}, which is not
+     * the case when calling a non-constant {@link MethodHandle}. Instances are cached per
+     * interface and method.
+     *
+     * <p>The generated class lives in this class's package and resolves the types it uses through
+     * the class loader of this class. If the method is not public, or if some of the types it uses
+     * are not public or not visible from that class loader (e.g. the method was loaded by a plugin
+     * class loader), the instance is created by {@link MethodHandleProxies#asInterfaceInstance}
+     * instead, which is slower to call but works with any class loader and any method, including
+     * the private methods returned by {@link #method}. Use {@link #lambda(Lookup, Class,
+     * MethodHandle)} with a lookup that has access to the method to get a fast instance anyway.
+     *
+     * <p>The interface must be public.
+     *
+     * @throws IllegalArgumentException if {@code iface} is not a functional interface.
+     */
+    public static <F> F lambda (Class<F> iface, Method method)
+    {
+        ConcurrentHashMap<Pair<Class<?>, Method>, Object> map =
+            lambdas.get(method.getDeclaringClass());
+        Pair<Class<?>, Method> key = new Pair<>(iface, method);
+        Object out = map.get(key);
+        if (out != null) return cast(out);
+        try {
+            out = accessible(iface) && accessible(method)
+                ? lambda(lookup.get(), iface, lookup.get().unreflect(method))
+                : proxy(iface, lookup.get().unreflect(accessibleCopy(method)));
+        } catch (IllegalAccessException e) {
+            throw runtime(e);
+        }
+        Object prev = map.putIfAbsent(key, out);
+        return cast(prev != null ? prev : out);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Like {@link #lambda(Class, Method)}, but takes a direct method handle (as obtained from
+     * {@code findXXX} or {@code unreflect} methods), resolved through {@code lookup}, which must
+     * have private access to its lookup class (e.g. {@code MethodHandles.lookup()}). The lambda
+     * is defined in the lookup class, and so is able to call any method that class can access.
+     *
+     * <p>The result of this method is not cached.
+     *
+     * @throws IllegalArgumentException if {@code iface} is not a functional interface.
+     */
+    public static <F> F lambda (Lookup lookup, Class<F> iface, MethodHandle handle)
+    {
+        Method sam = functionalMethod(iface);
+        MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+        MethodType implType = handle.type();
+
+        if (implType.parameterCount() != samType.parameterCount())
+            throw new IllegalArgumentException(String.format(
+                "%s cannot implement %s (parameter count mismatch)", handle, sam));
+
+        // Specializes the interface method to the implementation's types, boxing primitives
+        // where the interface expects references.
+        MethodType instantiated = samType;
+        for (int i = 0; i < samType.parameterCount(); ++i)
+            if (!samType.parameterType(i).isPrimitive())
+                instantiated = instantiated.changeParameterType(i, box(implType.parameterType(i)));
+        if (!samType.returnType().isPrimitive() && implType.returnType() != void.class)
+            instantiated = instantiated.changeReturnType(box(implType.returnType()));
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, sam.getName(),
+                MethodType.methodType(iface), samType, handle, instantiated);
+            return cast(site.getTarget().invoke());
+        } catch (Throwable t) {
+            throw runtime(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Whether {@code klass} is public and visible from the class loader of this class, i.e.
+     * whether a class generated in this class's package can refer to it.
+     */
+    private static boolean accessible (Class<?> klass)
+    {
+        while (klass.isArray()) klass = klass.getComponentType();
+        if (klass.isPrimitive()) return true;
+        if (!Modifier.isPublic(klass.getModifiers())) return false;
+        try {
+            return Class.forName(klass.getName(), false, Access.class.getClassLoader()) == klass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Whether the method is public and its declaring class, parameter types and return type are
+     * {@link #accessible(Class) accessible}.
+     */
+    private static boolean accessible (Method method)
+    {
+        if (!Modifier.isPublic(method.getModifiers())
+                || !accessible(method.getDeclaringClass())
+                || !accessible(method.getReturnType()))
+            return false;
+        for (Class<?> type: method.getParameterTypes())
+            if (!accessible(type)) return false;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a copy of {@code method} that has been {@link Method#setAccessible made accessible},
+     * leaving the accessibility of {@code method} (which may be cached) unchanged.
+     */
+    private static Method accessibleCopy (Method method)
+    {
+        for (Method m: method.getDeclaringClass().getDeclaredMethods())
+            if (m.equals(method)) {
+                m.setAccessible(true);
+                return m;
+            }
+        throw new Error(method + " not declared in its declaring class");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Fallback for {@link #lambda(Class, Method)} when the method is not {@link
+     * #accessible(Method) accessible}.
+     */
+    private static <F> F proxy (Class<F> iface, MethodHandle handle)
+    {
+        Method sam = functionalMethod(iface);
+        try {
+            return MethodHandleProxies.asInterfaceInstance(iface, handle);
+        } catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException(
+                String.format("%s cannot implement %s", handle, sam), e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Class<?> box (Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the single abstract method of the functional interface.
+     *
+     * @throws IllegalArgumentException if {@code iface} is not a functional interface.
+     */
+    private static Method functionalMethod (Class<?> iface)
+    {
+        if (!iface.isInterface())
+            throw new IllegalArgumentException(iface + " is not an interface");
+        Method out = null;
+        for (Method m: iface.getMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers())) continue;
+            // interfaces can redeclare public methods of Object (e.g. Comparator#equals)
+            if (Exceptions.runOrNull(() -> Object.class.getMethod(m.getName(), m.getParameterTypes()))
+                    != null)
+                continue;
+            if (out != null && !(out.getName().equals(m.getName())
+                    && Arrays.equals(out.getParameterTypes(), m.getParameterTypes())))
+                throw new IllegalArgumentException(iface + " is not a functional interface");
+            out = out == null || out.getReturnType().isAssignableFrom(m.getReturnType()) ? m : out;
+        }
+        if (out == null)
+            throw new IllegalArgumentException(iface + " is not a functional interface");
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link Function} that calls {@code method}: either an instance method without
+     * parameters (called on the function's parameter) or a static method with a single parameter.
+     * See {@link #lambda(Class, Method)}.
+     */
+    public static <T, R> Function<T, R> function (Method method) {
+        return cast(lambda(Function.class, method));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link Supplier} that calls {@code method}, a static method without parameters.
+     * See {@link #lambda(Class, Method)}.
+     */
+    public static <T> Supplier<T> supplier (Method method) {
+        return cast(lambda(Supplier.class, method));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link BiConsumer} that calls {@code method}: either an instance method with a
+     * single parameter (called on the first parameter of the consumer) or a static method with two
+     * parameters. Any return value is ignored. See {@link #lambda(Class, Method)}.
+     */
+    public static <T, U> BiConsumer<T, U> biConsumer (Method method) {
+        return cast(lambda(BiConsumer.class, method));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link Function} that reads the (potentially private) named field, as found by
+     * {@link #field(Class, String)}, from its parameter (ignored if the field is static).
+     *
+     * <p>{@link LambdaMetafactory} cannot target fields, so unlike {@link #function(Method)},
+     * the function calls a cached method handle, whose cost is similar to {@link #get(Object,
+     * String)} without the field lookup.
+     *
+     * @throws NoSuchFieldError if no field with the given name is found.
+     */
+    public static <T, R> Function<T, R> getterFunction (Class<?> klass, String name)
+    {
+        MethodHandle getter;
+        try {
+            getter = fieldAccessOrError(klass, name).erasedGetter();
+        } catch (IllegalAccessException e) {
+            throw runtime(e);
+        }
+        return object -> {
+            try {
+                return cast((Object) getter.invokeExact((Object) object));
+            } catch (Throwable t) {
+                throw runtime(t);
+            }
+        };
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a {@link BiConsumer} that sets the (potentially private) named field, as found by
+     * {@link #field(Class, String)}, on its first parameter (ignored if the field is static) to
+     * its second parameter. See {@link #getterFunction(Class, String)} for performance.
+     *
+     * @throws NoSuchFieldError if no field with the given name is found.
+     * @throws IllegalAccessError if the field cannot be written (e.g. it is static and final).
+     */
+    public static <T, V> BiConsumer<T, V> setterBiConsumer (Class<?> klass, String name)
+    {
+        MethodHandle setter;
+        try {
+            setter = fieldAccessOrError(klass, name).erasedSetter();
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+        return (object, value) -> {
+            try {
+                setter.invokeExact((Object) object, (Object) value);
+            } catch (Throwable t) {
+                throw runtime(t);
+            }
+        };
+    }
 
     // endregion
     // =============================================================================================
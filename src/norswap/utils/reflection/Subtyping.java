@@ -6,7 +6,9 @@ import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.util.Arrays;
-import java.util.stream.IntStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static norswap.utils.Util.cast;
 import static norswap.utils.reflection.Reflection.*;
@@ -62,11 +64,117 @@ import static norswap.utils.reflection.Reflection.*;
  * Note that interfaces are taken into account when determining subtyping. So are type bounds.
  * While we call this relationship "subtyping", it might be more intuitive to think of it as
  * the "is (a) assignable to (b)" relationship.
+ *
+ * <p>Checks between two {@code ParameterizedType} are memoized in a bounded concurrent cache, keyed
+ * on the structure of the types (so that e.g. two distinct {@link GenericType} instances with the
+ * same raw type and type arguments share an entry). The parameterized ancestors of each class are
+ * also computed once, so that a cached check costs a hash lookup, and an uncached check a single
+ * type substitution rather than a walk up the hierarchy.
  */
 public final class Subtyping
 {
     // ---------------------------------------------------------------------------------------------
 
+    /** Number of entries above which {@link #cache} is cleared. */
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Memoized results of {@link #check(ParameterizedType, ParameterizedType)}. */
+    private static final ConcurrentHashMap<Key, Boolean> cache = new ConcurrentHashMap<>();
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Maps each class to its ancestors (superclasses and superinterfaces, transitively), each
+     * associated with the type arguments it receives, expressed in terms of the type parameters of
+     * the class. An empty array of type arguments means the ancestor is inherited as a raw type.
+     */
+    private static final ClassValue<Map<Class<?>, Type[]>> ancestors =
+        new ClassValue<Map<Class<?>, Type[]>>() {
+            @Override protected Map<Class<?>, Type[]> computeValue (Class<?> klass) {
+                return computeAncestors(klass);
+            }
+        };
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Map<Class<?>, Type[]> computeAncestors (Class<?> klass)
+    {
+        HashMap<Class<?>, Type[]> out = new HashMap<>();
+        Type superclass = klass.getGenericSuperclass();
+        if (superclass != null)
+            addAncestors(out, superclass);
+        for (Type iface: klass.getGenericInterfaces())
+            addAncestors(out, iface);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Adds {@code parent} (a direct supertype) and its own ancestors to {@code out}. */
+    private static void addAncestors (Map<Class<?>, Type[]> out, Type parent)
+    {
+        Class<?> raw = parent instanceof Class
+            ? (Class<?>) parent
+            : raw((ParameterizedType) parent);
+        Type[] args = parent instanceof Class
+            ? new Type[0]
+            : ((ParameterizedType) parent).getActualTypeArguments();
+
+        out.putIfAbsent(raw, args);
+        TypeVariable<?>[] params = raw.getTypeParameters();
+        boolean erased = params.length > 0 && args.length == 0;
+
+        for (Map.Entry<Class<?>, Type[]> e: ancestors.get(raw).entrySet())
+            out.putIfAbsent(e.getKey(),
+                erased ? new Type[0] // generic class inherited raw: all ancestors are erased
+                : params.length == 0 ? e.getValue()
+                : substitute(e.getValue(), params, args));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Type[] substitute (Type[] types, TypeVariable<?>[] from, Type[] to)
+    {
+        Type[] out = new Type[types.length];
+        for (int i = 0; i < types.length; ++i)
+            out[i] = substitute(types[i], from, to);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Replaces the occurrences of the type variables in {@code from} by the types in {@code to}. */
+    private static Type substitute (Type type, TypeVariable<?>[] from, Type[] to)
+    {
+        if (type instanceof TypeVariable) {
+            for (int i = 0; i < from.length; ++i)
+                if (from[i].equals(type)) return to[i];
+            return type;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType ptype = cast(type);
+            Type[] args = ptype.getActualTypeArguments();
+            return args.length == 0
+                ? type
+                : new GenericType(null, raw(ptype), substitute(args, from, to));
+        }
+        if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayOf(substitute(component, from, to));
+        }
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = cast(type);
+            return new Wildcard(
+                substitute(wildcard.getUpperBounds(), from, to),
+                substitute(wildcard.getLowerBounds(), from, to));
+        }
+        return type;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     public static boolean check (Class<?> a, Class<?> b) {
         return b.isAssignableFrom(a);
     }
@@ -125,30 +233,51 @@ public final class Subtyping
 
     // ---------------------------------------------------------------------------------------------
 
-    public static boolean check (ParameterizedType a, ParameterizedType b) {
+    public static boolean check (ParameterizedType a, ParameterizedType b)
+    {
+        Key key = new Key(a, b);
+        Boolean result = cache.get(key);
+        if (result != null) return result;
+
+        // not computeIfAbsent: the check recursively populates the cache
+        boolean out = checkUncached(a, b);
+        if (cache.size() >= MAX_CACHE_SIZE) cache.clear();
+        cache.put(key, out);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static boolean checkUncached (ParameterizedType a, ParameterizedType b)
+    {
         Type[] argsA = a.getActualTypeArguments();
         Type[] argsB = b.getActualTypeArguments();
 
         Class<?> rawA = raw(a);
         Class<?> rawB = raw(b);
 
-        if (rawA.equals(rawB)) {
-            if (argsA.length < argsB.length) // a is erased
+        if (!rawA.equals(rawB)) {
+            if (!check(rawA, rawB))
                 return false;
-            if (argsA.length > argsB.length) // b is erased
+            if (argsB.length == 0) // b is erased
                 return true;
-            else
-                return IntStream.range(0, argsA.length).allMatch(i -> check(argsA[i], argsB[i]));
+            TypeVariable<?>[] paramsA = rawA.getTypeParameters();
+            if (argsA.length < paramsA.length) // a is erased, hence so is its ancestor
+                return false;
+            Type[] ancestorArgs = ancestors.get(rawA).get(rawB);
+            if (ancestorArgs == null || ancestorArgs.length == 0) // the ancestor is erased
+                return false;
+            argsA = substitute(ancestorArgs, paramsA, argsA);
         }
 
-        if (!check(rawA, rawB))
+        if (argsA.length < argsB.length) // a is erased
             return false;
+        if (argsA.length > argsB.length) // b is erased
+            return true;
 
-        Type parent = Reflection.actualParameterizedSupertype(a);
-        Type[] interfaces = Reflection.actualParameterizedInterfaces(a);
-
-        return parent != null && check(parent, b)
-                || Arrays.stream(interfaces).anyMatch(it -> check(it, b));
+        for (int i = 0; i < argsA.length; ++i)
+            if (!check(argsA[i], argsB[i])) return false;
+        return true;
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -224,7 +353,7 @@ public final class Subtyping
     // ---------------------------------------------------------------------------------------------
 
     public static boolean check (WildcardType a, WildcardType b) {
-        return a == b || Arrays.stream(a.getUpperBounds()).anyMatch(it -> check(it, b));
+        return same(a, b) || Arrays.stream(a.getUpperBounds()).anyMatch(it -> check(it, b));
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -433,4 +562,136 @@ public final class Subtyping
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /** Structural hash code of a type, consistent with {@link #same}. */
+    private static int hash (Type type)
+    {
+        if (type instanceof Class) // fast path, avoids interface type tests
+            return type.hashCode();
+        if (type instanceof ParameterizedType) {
+            ParameterizedType ptype = cast(type);
+            return 31 * ptype.getRawType().hashCode() + hash(ptype.getActualTypeArguments());
+        }
+        if (type instanceof GenericArrayType)
+            return 31 * hash(((GenericArrayType) type).getGenericComponentType()) + 1;
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = cast(type);
+            return 31 * hash(wildcard.getUpperBounds()) + hash(wildcard.getLowerBounds());
+        }
+        return type.hashCode();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static int hash (Type[] types)
+    {
+        int out = 1;
+        for (Type type: types) out = 31 * out + hash(type);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Structural equality of types: parameterized types, array types and wildcards are compared
+     * component-wise, regardless of their implementation. Owner types are ignored, as inner
+     * classes are not supported.
+     */
+    private static boolean same (Type a, Type b)
+    {
+        if (a == b)
+            return true;
+        if (a instanceof Class || b instanceof Class)
+            return false;
+        if (a instanceof ParameterizedType && b instanceof ParameterizedType) {
+            ParameterizedType pa = cast(a), pb = cast(b);
+            return pa.getRawType().equals(pb.getRawType())
+                && same(pa.getActualTypeArguments(), pb.getActualTypeArguments());
+        }
+        if (a instanceof GenericArrayType && b instanceof GenericArrayType)
+            return same(
+                ((GenericArrayType) a).getGenericComponentType(),
+                ((GenericArrayType) b).getGenericComponentType());
+        if (a instanceof WildcardType && b instanceof WildcardType) {
+            WildcardType wa = cast(a), wb = cast(b);
+            return same(wa.getUpperBounds(), wb.getUpperBounds())
+                && same(wa.getLowerBounds(), wb.getLowerBounds());
+        }
+        return a.equals(b);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static boolean same (Type[] a, Type[] b)
+    {
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; ++i)
+            if (!same(a[i], b[i])) return false;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Cache key for a pair of types, using structural equality. */
+    private static final class Key
+    {
+        private final Type a, b;
+        private final int hash;
+
+        Key (Type a, Type b) {
+            this.a = a;
+            this.b = b;
+            this.hash = 31 * hash(a) + hash(b);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+
+        @Override public boolean equals (Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && same(a, other.a) && same(b, other.b);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** A {@link GenericArrayType} resulting from type variable substitution. */
+    private static final class ArrayOf implements GenericArrayType
+    {
+        private final Type component;
+
+        ArrayOf (Type component) {
+            this.component = component;
+        }
+
+        @Override public Type getGenericComponentType() {
+            return component;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** A {@link WildcardType} resulting from type variable substitution. */
+    private static final class Wildcard implements WildcardType
+    {
+        private final Type[] upper, lower;
+
+        Wildcard (Type[] upper, Type[] lower) {
+            this.upper = upper;
+            this.lower = lower;
+        }
+
+        @Override public Type[] getUpperBounds() {
+            return upper;
+        }
+
+        @Override public Type[] getLowerBounds() {
+            return lower;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
@@ -0,0 +1,47 @@
+package norswap.utils.visitors;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Class-based dispatch helpers shared by {@link Visitor} and {@link ValuedVisitor}.
+ */
+final class Dispatch
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private Dispatch() {}
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the value mapped to {@code klass} or to its nearest supertype in {@code map}, or null
+     * if no such value exists.
+     *
+     * <p>All superclasses are considered (from the most to the least specific) before interfaces,
+     * which are considered in breadth-first order. This is the same order used to find the most
+     * specific method in {@link norswap.utils.reflection.Access#methodOrNull}.
+     */
+    static <V> V resolve (Class<?> klass, Map<? extends Class<?>, V> map)
+    {
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.addLast(klass);
+        while (!queue.isEmpty()) {
+            Class<?> current = queue.removeFirst();
+            V value = map.get(current);
+            if (value != null) return value;
+
+            Class<?> superClass = current.getSuperclass();
+            // Adding the superclass to the start ensures all superclasses are visited before
+            // the interfaces.
+            if (superClass != null) queue.addFirst(superClass);
+            // Add interfaces to the end.
+            queue.addAll(Arrays.asList(current.getInterfaces()));
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
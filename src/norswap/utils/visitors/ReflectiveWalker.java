@@ -1,15 +1,16 @@
 package norswap.utils.visitors;
 
+import norswap.utils.data.structures.ArrayStack;
+import norswap.utils.exceptions.Exceptions;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
-import java.util.ArrayList;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 
 import static norswap.utils.Util.cast;
-import static norswap.utils.reflection.Reflection.tryHandles;
 
 /**
  * Abstract class for the implementation of a {@link Walker} that determines the children
@@ -24,6 +25,10 @@ import static norswap.utils.reflection.Reflection.tryHandles;
  *
  * <p>The {@link MethodHandle} contained in the returned list can be octained by using the {@link
  * #lookup} static field of this class.
+ *
+ * <p>For each node class, the handles are combined once into a single handle that pushes all the
+ * children of a node directly on the walker's stack (see {@link #pushChildren}), so walking does
+ * not allocate per node.
  */
 public abstract class ReflectiveWalker<T> extends Walker<T>
 {
@@ -45,7 +50,27 @@ public abstract class ReflectiveWalker<T> extends Walker<T>
 
     // ---------------------------------------------------------------------------------------------
 
-    private final HashMap<Class<? extends T>, List<HandleWrapper>> classData = new HashMap<>();
+    /**
+     * Memoizes the handle returned by {@link #compile} for each node class. Thread-safe, as
+     * children may be retrieved from multiple threads.
+     */
+    private final ClassValue<MethodHandle> classData = new ClassValue<MethodHandle>() {
+        @Override protected MethodHandle computeValue (Class<?> klass) {
+            return compile(cast(klass));
+        }
+    };
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static final MethodType PUSHER_TYPE =
+        MethodType.methodType(void.class, Object.class, ArrayStack.class);
+
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodHandle NO_CHILDREN = findPusher("noChildren");
+    private static final MethodHandle PUSH_ITEM = findPusher("pushItem");
+    private static final MethodHandle PUSH_ITEMS = findPusher("pushItems");
 
     // ---------------------------------------------------------------------------------------------
 
@@ -68,27 +93,80 @@ public abstract class ReflectiveWalker<T> extends Walker<T>
 
     @Override public Iterable<T> children (T node)
     {
-        List<HandleWrapper> handles = classData
-                .computeIfAbsent(cast(node.getClass()), this::handlesFor);
-
-        ArrayList<T> children = new ArrayList<>(handles.size());
-
-        tryHandles(() -> {
-            for (HandleWrapper wrap: handles)
-                if (wrap.collection) {
-                    Collection<T> items = cast(wrap.handle.invoke(node));
-                    if (items != null) children.addAll(items);
-                } else {
-                    T item = cast(wrap.handle.invoke(node));
-                    if (item != null) children.add(item);
-                }
-        });
-
+        ArrayStack<T> children = new ArrayStack<>();
+        pushChildren(node, children);
         return children;
     }
 
     // ---------------------------------------------------------------------------------------------
 
+    @Override protected void pushChildren (T node, ArrayStack<T> out)
+    {
+        MethodHandle pusher = classData.get(node.getClass());
+
+        // Not using Reflection#tryHandles, as the capturing lambda would allocate.
+        try {
+            pusher.invokeExact((Object) node, (ArrayStack<?>) out);
+        } catch (WrongMethodTypeException e) {
+            throw new Error(e); // should not reach here
+        } catch (Throwable t) {
+            Exceptions.rethrow(t);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Combines the handles returned by {@link #handlesFor} for the given class into a single handle
+     * of type {@code (Object, ArrayStack) -> void} that pushes the (non-null) children of a node of
+     * that class onto the stack, in order.
+     */
+    private MethodHandle compile (Class<? extends T> klass)
+    {
+        List<HandleWrapper> handles = handlesFor(klass);
+        MethodHandle pusher = NO_CHILDREN;
+
+        // Build from the last handle: foldArguments runs the combiner before the target.
+        for (int i = handles.size() - 1; i >= 0; --i) {
+            HandleWrapper wrap = handles.get(i);
+            MethodHandle getter = wrap.handle.asType(GETTER_TYPE);
+            MethodHandle push = MethodHandles.filterArguments(
+                wrap.collection ? PUSH_ITEMS : PUSH_ITEM, 0, getter);
+            pusher = pusher == NO_CHILDREN ? push : MethodHandles.foldArguments(pusher, push);
+        }
+
+        return pusher;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static MethodHandle findPusher (String name)
+    {
+        try {
+            return lookup.findStatic(ReflectiveWalker.class, name, PUSHER_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new Error(e); // should not reach here
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void noChildren (Object node, ArrayStack<?> out) {}
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void pushItem (Object item, ArrayStack<Object> out) {
+        if (item != null) out.push(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static void pushItems (Object items, ArrayStack<Object> out) {
+        if (items != null) out.addAll((Collection<?>) items);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
     /**
      * Wraps a {@link MethodHandle} that either returns a node of type {@code T}, or
      * a collection of such nodes if {@link #collection} {@code == true}.
@@ -9,7 +9,8 @@ import static norswap.utils.exceptions.Exceptions.exprThrow;
 
 /**
  * Analogue to {@link Visitor}, but implementing {@link Function} instead of {@link Consumer}.
- * See the documentation of {@link Visitor} for usage notes.
+ * See the documentation of {@link Visitor} for usage notes, including for {@link
+ * #ValuedVisitor(boolean) inheritance-aware dispatch}.
  */
 public final class ValuedVisitor<T, R> implements Function<T, R>
 {
@@ -21,6 +22,55 @@ public final class ValuedVisitor<T, R> implements Function<T, R>
 
     private Function<? super T, ? extends R> fallbackSpecialization = null;
 
+    /** Whether to dispatch on supertypes, see {@link #ValuedVisitor(boolean)}. */
+    public final boolean inheritance;
+
+    /**
+     * Memoizes the specialization for each class (taking {@link #inheritance} into account), or
+     * {@link #NONE} if there are none. Replaced whenever a specialization is registered.
+     */
+    private ClassValue<Function<? super T, ? extends R>> resolved = newResolvedCache();
+
+    /** See {@link #freeze()}. */
+    private boolean frozen = false;
+
+    /** Sentinel cached in {@link #resolved} for classes without applicable specialization. */
+    private static final Function<Object, Object> NONE = value -> null;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a visitor that only dispatches on the exact class of values.
+     */
+    public ValuedVisitor() {
+        this(false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a visitor that, if {@code inheritance} is true, dispatches values without a
+     * specialization for their class to the specialization of their nearest supertype (see {@link
+     * Visitor}).
+     */
+    public ValuedVisitor (boolean inheritance) {
+        this.inheritance = inheritance;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ClassValue<Function<? super T, ? extends R>> newResolvedCache()
+    {
+        return new ClassValue<Function<? super T, ? extends R>>() {
+            @Override protected Function<? super T, ? extends R> computeValue (Class<?> klass) {
+                Function<? super T, ? extends R> action = inheritance
+                    ? Dispatch.resolve(klass, dispatch)
+                    : dispatch.get(klass);
+                return action != null ? action : cast(NONE);
+            }
+        };
+    }
+
     // ---------------------------------------------------------------------------------------------
 
     /**
@@ -28,7 +78,8 @@ public final class ValuedVisitor<T, R> implements Function<T, R>
      */
     @Override public R apply (T value)
     {
-        Function<? super T, ? extends R> action = dispatch.get(value.getClass());
+        Function<? super T, ? extends R> action = resolved.get(value.getClass());
+        if (action == NONE) action = null;
 
         return action == null
             ? fallbackSpecialization == null
@@ -47,9 +98,11 @@ public final class ValuedVisitor<T, R> implements Function<T, R>
     public <T1 extends T> ValuedVisitor<T, R> register
         (Class<T1> klass, Function<? super T1, ? extends R> specialization)
     {
+        checkNotFrozen();
         // The cast is a lie, but its statically safe because of erasure, and safe at runtime,
         // by construction.
         dispatch.put(klass, cast(specialization));
+        resolved = newResolvedCache();
         return this;
     }
 
@@ -60,9 +113,30 @@ public final class ValuedVisitor<T, R> implements Function<T, R>
      */
     public ValuedVisitor<T, R> registerFallback (Function<? super T, ? extends R> fallback)
     {
+        checkNotFrozen();
         this.fallbackSpecialization = fallback;
         return this;
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Prevents any further registration of specializations, which will throw an {@link
+     * IllegalStateException}. A frozen visitor can be used concurrently from multiple threads.
+     */
+    public ValuedVisitor<T, R> freeze()
+    {
+        frozen = true;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void checkNotFrozen()
+    {
+        if (frozen)
+            throw new IllegalStateException("Cannot register specializations on a frozen visitor.");
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
@@ -10,9 +10,14 @@ import static norswap.utils.Util.cast;
  * (<i>specializations</i>) for different subclasses of {@code T}.
  *
  * <p>Each specialization is represented by an instance of {@link Consumer}. They are registered by
- * calling {@link #register(Class, Consumer)}. Specializations for a class are only operational for
- * values that have that specific class — inheritance does not enter into account when dispatching
- * the operation.
+ * calling {@link #register(Class, Consumer)}. By default, specializations for a class are only
+ * operational for values that have that specific class — inheritance does not enter into account
+ * when dispatching the operation.
+ *
+ * <p>If the visitor is created with {@link #Visitor(boolean) inheritance enabled}, a value whose
+ * class has no specialization is dispatched to the specialization of its nearest supertype
+ * (superclasses are considered before interfaces, see {@link Dispatch#resolve}). The resolution is
+ * performed once per class and memoized in a {@link ClassValue}.
  *
  * <p>The operation is invoked by calling {@link #accept}.
  *
@@ -27,7 +32,10 @@ import static norswap.utils.Util.cast;
  * that context object might be the {@code Consumer} instance itself, or an instance of the class
  * where all consumers are defined as lambda or methods.
  *
- * <p>This is implemented on top of a class-to-specialization hashmap.
+ * <p>Specializations are registered in a class-to-specialization hashmap, but dispatch goes through
+ * a {@link ClassValue} memoizing the specialization for each class. Once all specializations are
+ * registered, the visitor can be {@link #freeze() frozen}, after which it can be shared between
+ * threads without synchronization (provided it is safely published, e.g. through a final field).
  */
 public final class Visitor<T> implements Consumer<T>
 {
@@ -38,6 +46,55 @@ public final class Visitor<T> implements Consumer<T>
 
     private Consumer<? super T> fallbackSpecialization = null;
 
+    /** Whether to dispatch on supertypes, see {@link #Visitor(boolean)}. */
+    public final boolean inheritance;
+
+    /**
+     * Memoizes the specialization for each class (taking {@link #inheritance} into account), or
+     * {@link #NONE} if there are none. Replaced whenever a specialization is registered.
+     */
+    private ClassValue<Consumer<? super T>> resolved = newResolvedCache();
+
+    /** See {@link #freeze()}. */
+    private boolean frozen = false;
+
+    /** Sentinel cached in {@link #resolved} for classes without applicable specialization. */
+    private static final Consumer<Object> NONE = value -> {};
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a visitor that only dispatches on the exact class of values.
+     */
+    public Visitor() {
+        this(false);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a visitor that, if {@code inheritance} is true, dispatches values without a
+     * specialization for their class to the specialization of their nearest supertype (see {@link
+     * Visitor}).
+     */
+    public Visitor (boolean inheritance) {
+        this.inheritance = inheritance;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private ClassValue<Consumer<? super T>> newResolvedCache()
+    {
+        return new ClassValue<Consumer<? super T>>() {
+            @Override protected Consumer<? super T> computeValue (Class<?> klass) {
+                Consumer<? super T> action = inheritance
+                    ? Dispatch.resolve(klass, dispatch)
+                    : dispatch.get(klass);
+                return action == null ? NONE : action;
+            }
+        };
+    }
+
     // ---------------------------------------------------------------------------------------------
 
     /**
@@ -45,7 +102,9 @@ public final class Visitor<T> implements Consumer<T>
      */
     @Override public void accept (T value)
     {
-        Consumer<? super T> action = dispatch.get(value.getClass());
+        Consumer<? super T> action = resolved.get(value.getClass());
+        if (action == NONE) action = null;
+
         if (action == null) {
             if (fallbackSpecialization == null)
                 throw new IllegalArgumentException("no fallback specified for " + this);
@@ -61,9 +120,11 @@ public final class Visitor<T> implements Consumer<T>
      */
     public <S extends T> Visitor<T> register (Class<S> klass, Consumer<? super S> specialization)
     {
+        checkNotFrozen();
         // The cast is a lie, but its statically safe because of erasure, and safe at runtime,
         // by construction.
         dispatch.put(klass, cast(specialization));
+        resolved = newResolvedCache();
         return this;
     }
 
@@ -74,9 +135,30 @@ public final class Visitor<T> implements Consumer<T>
      */
     public Visitor<T> registerFallback (Consumer<? super T> fallback)
     {
+        checkNotFrozen();
         this.fallbackSpecialization = fallback;
         return this;
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Prevents any further registration of specializations, which will throw an {@link
+     * IllegalStateException}. A frozen visitor can be used concurrently from multiple threads.
+     */
+    public Visitor<T> freeze()
+    {
+        frozen = true;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void checkNotFrozen()
+    {
+        if (frozen)
+            throw new IllegalStateException("Cannot register specializations on a frozen visitor.");
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
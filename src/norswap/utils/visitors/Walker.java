@@ -1,9 +1,17 @@
 package norswap.utils.visitors;
 
 import norswap.utils.NArrays;
+import norswap.utils.data.structures.ArrayListInt;
+import norswap.utils.data.structures.ArrayStack;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 import static norswap.utils.Util.cast;
 import static norswap.utils.visitors.WalkVisitType.*;
@@ -39,11 +47,21 @@ import static norswap.utils.visitors.WalkVisitType.*;
  * IllegalArgumentException} is thrown.
  *
  * <p>The class offers the {@link #walk} method, which calls the visitor operation on the node
- * (possibly multiple times, see below) and recursively calls itself on the children of the
- * node.
+ * (possibly multiple times, see below) and walks the children of the node. The walk does not
+ * recurse on the Java stack but maintains its own stack of frames on the heap, so the depth of the
+ * tree is only limited by the available memory.
+ *
+ * <p>Independent subtrees can also be walked concurrently using {@link #walkParallel}.
+ *
+ * <p>Dispatch goes through a {@link ClassValue} memoizing the specializations for each class. Once
+ * all specializations are registered, the walker can be {@link #freeze() frozen}, after which it
+ * can be shared between threads: each thread uses its own walk state.
  *
  * <p>To use this class, you must subclass it and override the {@link #children} method to
- * instruct the walker how to find the children of a node.
+ * instruct the walker how to find the children of a node. Subclasses that can enumerate children
+ * without materializing a collection should also override {@link #pushChildren}, which is what
+ * {@link #walk} actually uses. The children of a node are always retrieved before the first of them
+ * is walked.
  *
  * <p>Specialization must not call the {@link #walk} method of their own walker!
  */
@@ -72,13 +90,27 @@ public abstract class Walker<T>
 
     // ---------------------------------------------------------------------------------------------
 
-    private final class Specializations
+    /**
+     * The specializations registered for a class, or the fallback specializations.
+     *
+     * <p>Instances are stored as {@link ClassValue} values on node classes, so they must not
+     * reference the walker: the walker would otherwise stay reachable for as long as the node
+     * classes it walked.
+     */
+    private static final class Specializations<T>
     {
         Consumer<? super T> pre;
         Consumer<? super T> post;
         Consumer<? super T> in;
         BiConsumer<WalkVisitType, ? super T> all;
 
+        /** The fallback specializations, or null if these are the fallback specializations. */
+        final Specializations<T> fallback;
+
+        Specializations (Specializations<T> fallback) {
+            this.fallback = fallback;
+        }
+
         void call (WalkVisitType visitType, T node)
         {
             switch (visitType) {
@@ -95,8 +127,8 @@ public abstract class Walker<T>
 
             if (all != null)
                 all.accept(visitType, node);
-            else if (this != fallbackSpecializations)
-                fallbackSpecializations.call(visitType, node);
+            else if (fallback != null)
+                fallback.call(visitType, node);
             else
                 throw new IllegalArgumentException(String.format(
                     "no valid specialization found for node: %s (visit type: %s)",
@@ -118,11 +150,172 @@ public abstract class Walker<T>
 
     // ---------------------------------------------------------------------------------------------
 
-    private final HashMap<Class<? extends T>, Specializations> dispatch = new HashMap<>();
+    /**
+     * Memoizes the specializations for each class, or the fallback specializations if there are
+     * none. Does not reference the walker, see {@link Specializations}.
+     */
+    private static final class Resolved<T> extends ClassValue<Specializations<T>>
+    {
+        /** Map from classes to specializations, as registered. */
+        final HashMap<Class<?>, Specializations<T>> dispatch = new HashMap<>();
+
+        final Specializations<T> fallback = new Specializations<>(null);
+
+        @Override protected Specializations<T> computeValue (Class<?> klass)
+        {
+            Specializations<T> specializations = dispatch.get(klass);
+            return specializations != null ? specializations : fallback;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private final Resolved<T> resolved = new Resolved<>();
+
+    private final Specializations<T> fallbackSpecializations = resolved.fallback;
 
-    private final Specializations fallbackSpecializations = new Specializations();
+    /** See {@link #freeze()}. */
+    private boolean frozen = false;
 
-    private WalkVisitType visitType;
+    /**
+     * State for the walks performed by {@link #walk(Object)} on each thread.
+     */
+    private final ThreadLocal<WalkState<T>> state = ThreadLocal.withInitial(WalkState::new);
+
+    /**
+     * State of the parallel walk task running on the current thread, if any.
+     */
+    private final ThreadLocal<WalkState<T>> parallelState = new ThreadLocal<>();
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * The mutable state of a walk, which is kept separate from the walker so that multiple walks
+     * may run concurrently (see {@link #walkParallel}).
+     *
+     * <p>Like {@link Specializations}, must not reference the walker, as the thread-local maps of
+     * pooled threads would keep it reachable.
+     */
+    private static final class WalkState<T>
+    {
+        /**
+         * Holds the children of all nodes currently being walked. The children of each node occupy
+         * a contiguous range, which is truncated once the node has been walked.
+         */
+        final ArrayStack<T> children = new ArrayStack<>();
+
+        /**
+         * Nodes whose children are being walked, from the root to the deepest node.
+         */
+        final ArrayStack<T> nodes = new ArrayStack<>();
+
+        /**
+         * Four entries per node in {@link #nodes}: the index of its first child in {@link
+         * #children}, the index of the next child to walk, the index past its last child, and the
+         * size of {@link #pieces} when the node was entered.
+         */
+        final ArrayListInt indices = new ArrayListInt();
+
+        /**
+         * For parallel walks only: the parallel walk this state belongs to.
+         */
+        final ParallelWalk<?> parallel;
+
+        /**
+         * For parallel walks only: tasks forked by this walk, interleaved (if the walk has
+         * accumulators) with the accumulators that were current when they were forked.
+         */
+        final ArrayStack<Object> pieces;
+
+        /**
+         * For parallel walks with accumulators only: the accumulator the specializations currently
+         * contribute to.
+         */
+        Object accumulator;
+
+        WalkState () {
+            this.parallel = null;
+            this.pieces = null;
+        }
+
+        WalkState (ParallelWalk<?> parallel) {
+            this.parallel = parallel;
+            this.pieces = new ArrayStack<>();
+            if (parallel.supplier != null)
+                this.accumulator = parallel.supplier.get();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Parameters of a call to {@link #walkParallel}.
+     */
+    private static final class ParallelWalk<A>
+    {
+        final ToIntFunction<Object> subtreeSize;
+        final int threshold;
+        final Supplier<A> supplier;
+        final BinaryOperator<A> combiner;
+
+        ParallelWalk (ToIntFunction<Object> subtreeSize, int threshold,
+                      Supplier<A> supplier, BinaryOperator<A> combiner) {
+            this.subtreeSize = subtreeSize;
+            this.threshold = threshold;
+            this.supplier = supplier;
+            this.combiner = combiner;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Walks a subtree as part of a parallel walk, returning its accumulated result (or null if the
+     * walk has no accumulators).
+     */
+    private final class WalkTask extends RecursiveTask<Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final T root;
+        private final ParallelWalk<?> parallel;
+
+        WalkTask (T root, ParallelWalk<?> parallel) {
+            this.root = root;
+            this.parallel = parallel;
+        }
+
+        @Override protected Object compute()
+        {
+            WalkState<T> walkState = new WalkState<>(parallel);
+            // The thread may already be running a task it is waiting on, when helping to join.
+            WalkState<T> outer = parallelState.get();
+            parallelState.set(walkState);
+            try {
+                run(walkState, root);
+            } finally {
+                if (outer == null)
+                    parallelState.remove();
+                else
+                    parallelState.set(outer);
+            }
+
+            if (parallel.combiner == null)
+                return null;
+
+            BinaryOperator<Object> combiner = cast(parallel.combiner);
+            Object result = null;
+            boolean first = true;
+            for (Object piece: walkState.pieces) {
+                Object value = piece instanceof ForkJoinTask
+                    ? ((ForkJoinTask<?>) piece).join()
+                    : piece;
+                result = first ? value : combiner.apply(result, value);
+                first = false;
+            }
+            return first ? walkState.accumulator : combiner.apply(result, walkState.accumulator);
+        }
+    }
 
     // ---------------------------------------------------------------------------------------------
 
@@ -133,11 +326,23 @@ public abstract class Walker<T>
 
     // ---------------------------------------------------------------------------------------------
 
-    private void visit (T node)
+    /**
+     * Pushes the children of {@code node} on top of {@code out}, in walk order. Items already on
+     * the stack must not be modified.
+     *
+     * <p>The default implementation pushes the items returned by {@link #children}. Override it to
+     * avoid allocating a collection of children for every walked node.
+     */
+    protected void pushChildren (T node, ArrayStack<T> out)
     {
-        Specializations specializations = dispatch.get(node.getClass());
-        if (specializations == null) specializations = fallbackSpecializations;
-        specializations.call(visitType, node);
+        for (T child: children(node))
+            out.push(child);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void visit (WalkVisitType visitType, T node) {
+        resolved.get(node.getClass()).call(visitType, node);
     }
 
     // ---------------------------------------------------------------------------------------------
@@ -145,28 +350,182 @@ public abstract class Walker<T>
     /**
      * Walk the tree-like hierarchy rooted at the node, see {@link Walker}.
      */
-    public void walk (T node)
+    public void walk (T node) {
+        run(state.get(), node);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Walks the tree-like hierarchy rooted at the node like {@link #walk(Object)}, but walks large
+     * subtrees concurrently in {@code pool}.
+     *
+     * <p>Before walking a child, the walker calls {@code subtreeSize} on it. If the result is at
+     * least {@code threshold}, the subtree rooted at the child is walked in a separate fork/join
+     * task, otherwise it is walked by the current task. {@code subtreeSize} only needs to be a
+     * cheap estimate of the number of nodes in the subtree (e.g. {@code n -> depth(n) * 10}).
+     *
+     * <p>By calling this method, the caller declares that the specializations registered on this
+     * walker are thread-safe: they may run concurrently on different nodes. The visit order of
+     * nodes within a subtree is preserved, and a node is always post-visited after all its
+     * descendants have been visited. Walkers that perform in-visits are not supported, as in-visits
+     * would have to wait for the preceding child to be fully walked.
+     *
+     * <p>It is safe to call {@link #walk(Object)} or this method concurrently with a parallel walk
+     * on the same walker.
+     *
+     * @throws IllegalStateException if this walker performs in-visits.
+     */
+    public void walkParallel
+            (T node, ForkJoinPool pool, ToIntFunction<? super T> subtreeSize, int threshold)
     {
-        if (preVisit) {
-            visitType = PRE_VISIT;
-            visit(node);
-        }
+        walkParallel(node, pool, subtreeSize, threshold, null, null);
+    }
 
-        boolean first = true;
-        for (T child: children(node)) {
-            if (inVisit && !first) {
-                visitType = IN_VISIT;
-                visit(node);
-            } else {
-                first = false;
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Same as {@link #walkParallel(Object, ForkJoinPool, ToIntFunction, int)}, but each task of the
+     * walk gets its own accumulator, created by {@code supplier}. Specializations access the
+     * accumulator of the task they are running in by calling {@link #accumulator()}.
+     *
+     * <p>The accumulators are merged with {@code combiner}, which must be associative, and the
+     * result is returned. Merges respect the walk order: the result is the same as if a single
+     * accumulator had been used for a sequential walk. In particular, a task's accumulator is
+     * replaced by a fresh one every time the task forks a subtree.
+     *
+     * @throws IllegalStateException if this walker performs in-visits.
+     */
+    public <A> A walkParallel (T node, ForkJoinPool pool,
+            ToIntFunction<? super T> subtreeSize, int threshold,
+            Supplier<A> supplier, BinaryOperator<A> combiner)
+    {
+        if (inVisit)
+            throw new IllegalStateException("Parallel walks do not support in-visits.");
+        ParallelWalk<A> parallel = new ParallelWalk<>(cast(subtreeSize), threshold, supplier, combiner);
+        return cast(pool.invoke(new WalkTask(node, parallel)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the accumulator of the parallel walk task the caller runs in. This is meant to be
+     * called from specializations, see {@link #walkParallel(Object, ForkJoinPool, ToIntFunction,
+     * int, Supplier, BinaryOperator)}.
+     *
+     * @throws IllegalStateException if not called within a parallel walk with accumulators.
+     */
+    public <A> A accumulator()
+    {
+        WalkState<T> walkState = parallelState.get();
+        if (walkState == null || walkState.parallel.supplier == null)
+            throw new IllegalStateException("Not in a parallel walk with accumulators.");
+        return cast(walkState.accumulator);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Walks the tree rooted at {@code node}, using the given state.
+     */
+    private void run (WalkState<T> s, T node)
+    {
+        ParallelWalk<?> parallel = s.parallel;
+        int baseFrame = s.nodes.size();
+        int baseChild = s.children.size();
+        try {
+            enter(s, node);
+            while (s.nodes.size() > baseFrame)
+            {
+                int frame = 4 * (s.nodes.size() - 1);
+                int start = s.indices.get(frame);
+                int next  = s.indices.get(frame + 1);
+                int end   = s.indices.get(frame + 2);
+                T current = s.nodes.peek();
+
+                if (next < end) {
+                    if (inVisit && next > start)
+                        visit(IN_VISIT, current);
+                    s.indices.set(frame + 1, next + 1);
+                    T child = s.children.get(next);
+                    if (parallel != null && parallel.subtreeSize.applyAsInt(child) >= parallel.threshold)
+                        fork(s, child);
+                    else
+                        enter(s, child);
+                    continue;
+                }
+
+                if (parallel != null)
+                    joinForked(s, s.indices.get(frame + 3));
+
+                s.nodes.pop();
+                s.indices.pop(4);
+                s.children.truncate(start);
+                if (postVisit)
+                    visit(POST_VISIT, current);
+            }
+        } finally {
+            // only does something if a specialization threw
+            if (s.nodes.size() > baseFrame) {
+                s.nodes.truncate(baseFrame);
+                s.indices.pop(s.indices.size() - 4 * baseFrame);
             }
-            walk(child);
+            if (s.children.size() > baseChild)
+                s.children.truncate(baseChild);
         }
-        if (postVisit) {
-            visitType = POST_VISIT;
-            visit(node);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pre-visits the node (if required) and pushes a frame for it, with its children.
+     */
+    private void enter (WalkState<T> s, T node)
+    {
+        if (preVisit)
+            visit(PRE_VISIT, node);
+        int start = s.children.size();
+        pushChildren(node, s.children);
+        s.nodes.push(node);
+        // not using the varargs overload, which would allocate
+        s.indices.push(start);
+        s.indices.push(start);
+        s.indices.push(s.children.size());
+        s.indices.push(s.pieces == null ? 0 : s.pieces.size());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Forks a task to walk the subtree rooted at {@code node}, retiring the current accumulator
+     * if the walk has accumulators.
+     */
+    private void fork (WalkState<T> s, T node)
+    {
+        if (s.parallel.supplier != null) {
+            s.pieces.push(s.accumulator);
+            s.accumulator = s.parallel.supplier.get();
         }
+        s.pieces.push(new WalkTask(node, s.parallel).fork());
     }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Waits for the completion of the tasks forked since {@code s.pieces} had size {@code from}.
+     */
+    private void joinForked (WalkState<T> s, int from)
+    {
+        for (int i = from; i < s.pieces.size(); ++i) {
+            Object piece = s.pieces.get(i);
+            if (piece instanceof ForkJoinTask)
+                ((ForkJoinTask<?>) piece).join();
+        }
+        // without accumulators, the tasks are not needed anymore once joined
+        if (s.parallel.supplier == null)
+            s.pieces.truncate(from);
+    }
+
     // ---------------------------------------------------------------------------------------------
 
     /**
@@ -175,8 +534,7 @@ public abstract class Walker<T>
     public <S extends T> Walker<T> register
             (Class<S> klass, WalkVisitType visitType, Consumer<? super S> specialization)
     {
-        Specializations specializations =
-                dispatch.computeIfAbsent(klass, k -> new Specializations());
+        Specializations<T> specializations = specializationsFor(klass);
         if (specializations.all != null)
             throw new IllegalStateException("Trying to mix per-visit-type and generic specializations.");
         specializations.set(visitType, cast(specialization));
@@ -192,7 +550,7 @@ public abstract class Walker<T>
     public <S extends T> Walker<T> register
             (Class<S> klass, BiConsumer<WalkVisitType, ? super S> specialization)
     {
-        Specializations s = dispatch.computeIfAbsent(klass, k -> new Specializations());
+        Specializations<T> s = specializationsFor(klass);
         if (s.pre != null || s.post != null || s.in != null)
             throw new IllegalStateException("Trying to mix per-visit-type and generic specializations.");
         s.all = cast(specialization);
@@ -207,6 +565,7 @@ public abstract class Walker<T>
      */
     public Walker<T> registerFallback (WalkVisitType visitType, Consumer<? super T> fallback)
     {
+        checkNotFrozen();
         if (fallbackSpecializations.all != null)
             throw new IllegalStateException("Trying to mix per-visit-type and generic fallbacks.");
         fallbackSpecializations.set(visitType, fallback);
@@ -220,7 +579,8 @@ public abstract class Walker<T>
      */
     public Walker<T> registerFallback (BiConsumer<WalkVisitType, ? super T> fallback)
     {
-        Specializations s = fallbackSpecializations;
+        checkNotFrozen();
+        Specializations<T> s = fallbackSpecializations;
         if (s.pre != null || s.post != null || s.in != null)
             throw new IllegalStateException("Trying to mix per-visit-type and generic fallbacks.");
         s.all = fallback;
@@ -228,4 +588,43 @@ public abstract class Walker<T>
     }
 
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Prevents any further registration of specializations, which will throw an {@link
+     * IllegalStateException}. A frozen walker can be used concurrently from multiple threads
+     * (provided it is safely published, e.g. through a final field).
+     */
+    public Walker<T> freeze()
+    {
+        frozen = true;
+        return this;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void checkNotFrozen()
+    {
+        if (frozen)
+            throw new IllegalStateException("Cannot register specializations on a frozen walker.");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the specializations registered for {@code klass}, creating them if needed.
+     */
+    private Specializations<T> specializationsFor (Class<? extends T> klass)
+    {
+        checkNotFrozen();
+        Specializations<T> specializations = resolved.dispatch.get(klass);
+        if (specializations == null) {
+            specializations = new Specializations<>(fallbackSpecializations);
+            resolved.dispatch.put(klass, specializations);
+            // the class may have been resolved to the fallback specializations
+            resolved.remove(klass);
+        }
+        return specializations;
+    }
+
+    // ---------------------------------------------------------------------------------------------
 }
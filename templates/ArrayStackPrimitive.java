@@ -0,0 +1,602 @@
+// Generated from templates/ArrayStackPrimitive.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.data.structures;
+
+import norswap.utils.NArrays;
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A stack of {@code #type#} values, without boxing, with the same interface as {@link ArrayStack}.
+ * Items are pushed and popped at the end of the backing array.
+ *
+ * <p>{@link ArrayStack}'s sublist methods ({@code top} and {@code from}) are not provided: use the
+ * {@link Window}s returned by {@link #topWindow(int)} and {@link #fromWindow(int)}, which read
+ * through to the stack without copying, as in {@link ArrayStack}. Where {@link ArrayStack} returns
+ * null when the stack does not have enough items ({@link #poll(#type#)},
+ * {@link #snoop(#type#)}, {@link #snoopBack(int, #type#)}), this returns a caller-supplied default
+ * value instead.
+ *
+ * <p>When the backing array is resized, it is expanded to the closest superior power of 2. The
+ * array is never shrunk in capacity when items are removed.
+ */
+public final class ArrayStack#Name# implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private #type#[] array;
+
+    private int size;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new stack with the given capacity.
+     */
+    public ArrayStack#Name# (int n) {
+        this.array = new #type#[n];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public ArrayStack#Name#() {
+        this(8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of items in this stack.
+     */
+    public int size() {
+        return size;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the stack has no items.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current capacity of the backing array.
+     */
+    public int capacity() {
+        return array.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the array currently backing this stack, whose first {@link #size()} items are the
+     * items of the stack, from bottom to top.
+     */
+    public #type#[] array() {
+        return array;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Ensures the backing array can hold at least {@code capacity} items without being resized.
+     */
+    public void ensureCapacity (int capacity)
+    {
+        if (array.length < capacity)
+            array = NArrays.resizeBinaryPower(array, capacity);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private String amountOutOfBoundsMessage (int n) {
+        return "Amount [" + n + "] invalid for stack size [" + size + "]";
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private String indexOutOfBoundsMessage (int i) {
+        return "Index [" + i + "] invalid for stack size [" + size + "]";
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the item at index {@code i}, counting from the bottom of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code i} is outside {@code [0, size()-1]}.
+     */
+    public #type# get (int i)
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(i));
+        return array[i];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Replaces the item at index {@code i}, counting from the bottom of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code i} is outside {@code [0, size()-1]}.
+     */
+    public void set (int i, #type# v)
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(i));
+        array[i] = v;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all items from the stack.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes {@code item} at the top of the stack.
+     */
+    public void push (#type# item)
+    {
+        if (array.length < size + 1)
+            array = NArrays.resizeBinaryPower(array, size + 1);
+        array[size++] = item;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes the items at the top of the stack, the last item ending up at the top.
+     */
+    public void push (#type#... items) {
+        push(items, 0, items.length);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Pushes the items of {@code items} in {@code [from, to[} at the top of the stack, the last
+     * item ending up at the top.
+     *
+     * @throws IndexOutOfBoundsException if the range is not valid for {@code items}.
+     */
+    public void push (#type#[] items, int from, int to)
+    {
+        if (from < 0 || to > items.length || from > to)
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "[");
+        int n = to - from;
+        ensureCapacity(size + n);
+        System.arraycopy(items, from, array, size, n);
+        size += n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a window over the {@code n} items at the top of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public Window topWindow (int n) {
+        return topWindow(n, new Window());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the {@code n} items at the top of the stack, and returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public Window topWindow (int n, Window window)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        return window.set(this, size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a window over the items between {@code index} and the top of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public Window fromWindow (int index) {
+        return fromWindow(index, new Window());
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Points {@code window} to the items between {@code index} and the top of the stack, and
+     * returns it.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public Window fromWindow (int index, Window window)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return window.set(this, index, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the top {@code n} items of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, in which case
+     * no items are removed.
+     */
+    public void removeTop (int n)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the items between {@code index} and the top of the stack.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, in which
+     * case no items are removed.
+     */
+    public void truncate (int index)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        size = index;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack.
+     *
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public #type# pop()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return array[--size];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the {@code n} items at the top of the stack, in a new array (from bottom
+     * to top).
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, in which case
+     * no items are removed.
+     */
+    public #type#[] pop (int n)
+    {
+        #type#[] out = peek(n);
+        size -= n;
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the {@code n} items at the top of the stack, and copies them (from bottom to top)
+     * into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the items starting at {@code offset}, in which case no items are removed.
+     */
+    public void pop (int n, #type#[] dest, int offset)
+    {
+        peek(n, dest, offset);
+        size -= n;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the the items between {@code index} and the top of the stack, in a new
+     * array (from bottom to top).
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public #type#[] popFrom (int index)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return pop(size - index);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes the items between {@code index} and the top of the stack, and copies them (from
+     * bottom to top) into {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the items starting at {@code offset}, in which case no items are
+     * removed.
+     */
+    public void popFrom (int index, #type#[] dest, int offset)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        pop(size - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes and returns the item at the top of the stack, or returns {@code defaultValue} if the
+     * stack is empty.
+     */
+    public #type# poll (#type# defaultValue) {
+        return size == 0 ? defaultValue : array[--size];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack.
+     *
+     * @throws NoSuchElementException if the stack is empty.
+     */
+    public #type# peek()
+    {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return array[size - 1];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the {@code n} items at the top of the stack, in a new array (from bottom to top).
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}.
+     */
+    public #type#[] peek (int n)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        return Arrays.copyOfRange(array, size - n, size);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the {@code n} items at the top of the stack (from bottom to top) into {@code dest},
+     * starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()]}, or if {@code
+     * dest} cannot hold the items starting at {@code offset}.
+     */
+    public void peek (int n, #type#[] dest, int offset)
+    {
+        if (n < 0 || size < n)
+            throw new IndexOutOfBoundsException(amountOutOfBoundsMessage(n));
+        System.arraycopy(array, size - n, dest, offset, n);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return an array containing the items between {@code index} and the top of the stack, in a
+     * new array (from bottom to top).
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}.
+     */
+    public #type#[] peekFrom (int index)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        return peek(size - index);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the items between {@code index} and the top of the stack (from bottom to top) into
+     * {@code dest}, starting at index {@code offset}.
+     *
+     * @throws IndexOutOfBoundsException if {@code index} is outside {@code [0, size()]}, or if
+     * {@code dest} cannot hold the items starting at {@code offset}.
+     */
+    public void peekFrom (int index, #type#[] dest, int offset)
+    {
+        if (index < 0 || size < index)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(index));
+        peek(size - index, dest, offset);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item at the top of the stack, or {@code defaultValue} if the stack is empty.
+     */
+    public #type# snoop (#type# defaultValue) {
+        return size == 0 ? defaultValue : array[size - 1];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} items below the top of the stack (0 = top).
+     *
+     * @throws IndexOutOfBoundsException if {@code n} is outside {@code [0, size()-1]}.
+     */
+    public #type# peekBack (int n)
+    {
+        if (n < 0 || size <= n)
+            throw new IndexOutOfBoundsException(indexOutOfBoundsMessage(n));
+        return array[size - 1 - n];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return the item that is {@code n} items below the top of the stack (0 = top), or {@code
+     * defaultValue} if the stack does not have that many items or {@code n} is negative.
+     */
+    public #type# snoopBack (int n, #type# defaultValue) {
+        return n < 0 || size <= n ? defaultValue : array[size - 1 - n];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public ArrayStack#Name# clone()
+    {
+        try {
+            ArrayStack#Name# out = (ArrayStack#Name#) super.clone();
+            out.array = array.clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < size; ++i)
+            b.append(array[i]).append(", ");
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("]");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 1;
+        for (int i = 0; i < size; ++i)
+            hashCode = 31*hashCode + #Boxed#.hashCode(array[i]);
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof ArrayStack#Name#))
+            return false;
+
+        ArrayStack#Name# other = (ArrayStack#Name#) o;
+
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; ++i)
+            if (#Boxed#.compare(array[i], other.array[i]) != 0)
+                return false;
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * A range of items of an {@link ArrayStack#Name#}, read directly from the stack, without
+     * copying. Indices in the window are relative to its start.
+     *
+     * <p>A window remains valid as long as the items it covers are not popped (pushing new items
+     * is fine).
+     *
+     * <p>Windows can be reused to avoid allocation: create an empty window with {@link
+     * #Window()}, then repeatedly pass it to {@link #topWindow(int, Window)} or {@link
+     * #fromWindow(int, Window)}.
+     */
+    public static final class Window
+    {
+        private ArrayStack#Name# stack;
+        private int start;
+        private int end;
+
+        /**
+         * Creates an empty window, not attached to any stack.
+         */
+        public Window() {}
+
+        private Window set (ArrayStack#Name# stack, int start, int end) {
+            this.stack = stack;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        /**
+         * Returns the number of items in the window.
+         */
+        public int size() {
+            return end - start;
+        }
+
+        /**
+         * Returns the index in the stack of the first item of the window.
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * Returns the {@code i}-th item of the window.
+         *
+         * @throws IndexOutOfBoundsException if {@code i} is outside {@code [0, size()-1]}.
+         */
+        public #type# get (int i)
+        {
+            if (i < 0 || i >= end - start)
+                throw new IndexOutOfBoundsException("Index [" + i + "] invalid for window size ["
+                    + (end - start) + "]");
+            return stack.array[start + i];
+        }
+
+        /**
+         * Copies the items of the window into {@code dest}, starting at index {@code offset}.
+         */
+        public void copyTo (#type#[] dest, int offset) {
+            System.arraycopy(stack.array, start, dest, offset, end - start);
+        }
+
+        /**
+         * Returns a new array containing the items of the window.
+         */
+        public #type#[] toArray() {
+            return Arrays.copyOfRange(stack.array, start, end);
+        }
+
+        @Override public String toString()
+        {
+            StringBuilder b = new StringBuilder("[");
+            for (int i = start; i < end; ++i)
+                b.append(stack.array[i]).append(", ");
+            if (b.length() > 1)
+                Strings.pop(b, 2);
+            b.append("]");
+            return b.toString();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,321 @@
+// Generated from templates/PrimitiveHashSet.java by `./gradlew generatePrimitiveLists`.
+// Edit the template rather than this file.
+package norswap.utils.data.structures;
+
+import norswap.utils.Strings;
+import java.util.Arrays;
+import java.util.function.#Name#Consumer;
+
+/**
+ * A hash set of {@code #type#} values, that does not box.
+ *
+ * <p>The set uses open addressing with linear probing: values are stored in an array whose size is
+ * a power of 2, which is resized when it becomes 3/4 full. Value {@code 0} is used to mark empty
+ * slots, so its presence is tracked separately. Removals shift the following values back, so the
+ * set never accumulates tombstones.
+ *
+ * <p>Iteration is performed via {@link #forEach(#Name#Consumer)}, which does not allocate.
+ *
+ * <p>The backing array is never shrunk in capacity when items are removed.
+ */
+public final class #Name#HashSet implements Cloneable
+{
+    // ---------------------------------------------------------------------------------------------
+
+    private #type#[] items;
+
+    /** Number of values stored in {@link #items} (i.e. excluding 0). */
+    private int fill;
+
+    private boolean hasZero;
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a set that can hold {@code expected} values without being resized.
+     */
+    public #Name#HashSet (int expected) {
+        this.items = new #type#[HashTables.capacityFor(expected)];
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    public #Name#HashSet() {
+        this(8);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of values in this set.
+     */
+    public int size() {
+        return hasZero ? fill + 1 : fill;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the set has no values.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current capacity of the backing array.
+     */
+    public int capacity() {
+        return items.length;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the slot at which {@code item} (which must not be 0) is stored, or -1 if absent.
+     */
+    private int find (#type# item)
+    {
+        int mask = items.length - 1;
+        for (int i = HashTables.slot(item, mask); ; i = (i + 1) & mask) {
+            #type# k = items[i];
+            if (k == item) return i;
+            if (k == 0)    return -1;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns true iff the set contains {@code item}.
+     */
+    public boolean contains (#type# item) {
+        return item == 0 ? hasZero : find(item) >= 0;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds {@code item} to the set, and returns true iff it wasn't already present.
+     */
+    public boolean add (#type# item)
+    {
+        if (item == 0) {
+            boolean had = hasZero;
+            hasZero = true;
+            return !had;
+        }
+
+        int mask = items.length - 1;
+        int i = HashTables.slot(item, mask);
+        for (#type# k = items[i]; k != 0; k = items[i]) {
+            if (k == item) return false;
+            i = (i + 1) & mask;
+        }
+
+        items[i] = item;
+        if (++fill > HashTables.maxFill(items.length))
+            rehash(items.length * 2);
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all the values to the set.
+     */
+    public void addAll (#type#... values) {
+        for (#type# item: values)
+            add(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Adds all the items in {@code list} to the set.
+     */
+    public void addAll (ArrayList#Name# list)
+    {
+        #type#[] array = list.array();
+        int size = list.size();
+        for (int i = 0; i < size; ++i)
+            add(array[i]);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes {@code item} from the set, and returns true iff it was present.
+     */
+    public boolean remove (#type# item)
+    {
+        if (item == 0) {
+            boolean had = hasZero;
+            hasZero = false;
+            return had;
+        }
+        int i = find(item);
+        if (i < 0) return false;
+        shiftBack(i);
+        --fill;
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all values from the set.
+     */
+    public void clear()
+    {
+        Arrays.fill(items, 0);
+        fill = 0;
+        hasZero = false;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Calls {@code consumer} on each value in the set, in unspecified order. The set must not be
+     * modified during the iteration.
+     */
+    public void forEach (#Name#Consumer consumer)
+    {
+        if (hasZero)
+            consumer.accept(0);
+        for (#type# item: items)
+            if (item != 0)
+                consumer.accept(item);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new array containing the values in the set, in unspecified order.
+     */
+    public #type#[] toArray()
+    {
+        #type#[] out = new #type#[size()];
+        int j = 0;
+        if (hasZero) ++j; // out[0] == 0 already
+        for (#type# item: items)
+            if (item != 0)
+                out[j++] = item;
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Returns a new list containing the values in the set, in unspecified order.
+     */
+    public ArrayList#Name# toList()
+    {
+        ArrayList#Name# out = new ArrayList#Name#(size());
+        forEach(out::add);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Empties slot {@code pos}, moving back the values that follow it in their probe sequence.
+     */
+    private void shiftBack (int pos)
+    {
+        int mask = items.length - 1;
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            #type# k;
+            while (true) {
+                k = items[pos];
+                if (k == 0) {
+                    items[last] = 0;
+                    return;
+                }
+                if (HashTables.canShift(last, HashTables.slot(k, mask), pos))
+                    break;
+                pos = (pos + 1) & mask;
+            }
+            items[last] = k;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void rehash (int capacity)
+    {
+        #type#[] oldItems = items;
+        items = new #type#[capacity];
+        int mask = capacity - 1;
+
+        for (#type# k: oldItems) {
+            if (k == 0) continue;
+            int i = HashTables.slot(k, mask);
+            while (items[i] != 0) i = (i + 1) & mask;
+            items[i] = k;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public #Name#HashSet clone()
+    {
+        try {
+            #Name#HashSet out = (#Name#HashSet) super.clone();
+            out.items = items.clone();
+            return out;
+        } catch (CloneNotSupportedException e) {
+            // impossible
+            throw new Error(e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public String toString()
+    {
+        StringBuilder b = new StringBuilder("{");
+        forEach(item -> b.append(item).append(", "));
+        if (b.length() > 1)
+            Strings.pop(b, 2);
+        b.append("}");
+        return b.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public int hashCode()
+    {
+        int hashCode = 0;
+        for (#type# item: items)
+            hashCode += #Boxed#.hashCode(item);
+        return hashCode;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Override public boolean equals (Object o)
+    {
+        if (o == this)
+            return true;
+        if (!(o instanceof #Name#HashSet))
+            return false;
+
+        #Name#HashSet other = (#Name#HashSet) o;
+
+        if (size() != other.size() || hasZero != other.hasZero)
+            return false;
+
+        for (#type# item: items)
+            if (item != 0 && other.find(item) < 0)
+                return false;
+
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}
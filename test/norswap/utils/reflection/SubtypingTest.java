@@ -0,0 +1,50 @@
+package norswap.utils.reflection;
+
+import norswap.utils.TestFixture;
+import org.testng.annotations.Test;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public final class SubtypingTest extends TestFixture
+{
+    // ---------------------------------------------------------------------------------------------
+
+    @SuppressWarnings("serial")
+    static class Base extends ArrayList<String> {}
+
+    @SuppressWarnings("serial")
+    static class Sub<T> extends Base {}
+
+    @SuppressWarnings({"serial", "rawtypes"})
+    static class RawSub<T> extends ArrayList {}
+
+    // ---------------------------------------------------------------------------------------------
+
+    private static Type type (Class<?> raw, Type... arguments) {
+        return new GenericType(null, raw, arguments);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Test public void nonGenericAncestor()
+    {
+        // twice: the second check hits the cache
+        for (int i = 0; i < 2; ++i) {
+            assertTrue(Subtyping.check(type(Sub.class, Integer.class), type(List.class, String.class)));
+            assertTrue(!Subtyping.check(type(Sub.class, Integer.class), type(List.class, Integer.class)));
+            assertTrue(Subtyping.check(type(Base.class), type(Collection.class, String.class)));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    @Test public void rawAncestor()
+    {
+        assertTrue(!Subtyping.check(type(RawSub.class, Integer.class), type(List.class, String.class)));
+        assertTrue(Subtyping.check(type(RawSub.class, Integer.class), type(List.class)));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+}